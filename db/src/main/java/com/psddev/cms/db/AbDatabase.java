@@ -6,6 +6,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -16,14 +18,44 @@ import com.psddev.dari.util.PaginatedResult;
 
 public class AbDatabase extends ForwardingDatabase {
 
-    private HttpServletRequest request;
+    private volatile HttpServletRequest request;
+    private volatile String seed;
+    private volatile long seedHash;
+    private volatile PageDependencies dependencies;
+
+    // Legacy bucketing results within the request, by object ID and field name,
+    // since each one costs an MD5 digest.
+    private final Map<UUID, Map<String, Double>> randoms = new ConcurrentHashMap<>();
 
     public HttpServletRequest getRequest() {
         return request;
     }
 
+    /**
+     * Sets the request, and reads everything that's needed from it right
+     * away, since the reads may happen in the threads that resolve the view
+     * getters in parallel, which mustn't access the request.
+     */
     public void setRequest(HttpServletRequest request) {
         this.request = request;
+        this.seed = request != null ? AbFilter.Static.getSeed(request) : null;
+        this.seedHash = AbFilter.Static.hash(String.valueOf(seed));
+
+        // Started here, since this runs before PageFilter, which continues
+        // the same recording.
+        this.dependencies = request != null ? PageDependencies.start(request) : null;
+    }
+
+    private double random(State state, String fieldName) {
+        UUID id = state.getId();
+
+        if (AbFilter.Static.isHashBucketing()) {
+            return AbFilter.Static.hashRandom(seedHash, id, fieldName);
+        }
+
+        return randoms
+                .computeIfAbsent(id, i -> new ConcurrentHashMap<>())
+                .computeIfAbsent(fieldName, f -> AbFilter.Static.md5Random(String.valueOf(seed), id, f));
     }
 
     // --- ForwardingDatabase support ---
@@ -40,6 +72,10 @@ public class AbDatabase extends ForwardingDatabase {
                     continue;
                 }
 
+                if (dependencies != null) {
+                    dependencies.setPersonalized();
+                }
+
                 List<AbVariation> variations = variationField.getVariations();
                 double total = 0.0;
 
@@ -48,7 +84,7 @@ public class AbDatabase extends ForwardingDatabase {
                 }
 
                 double accum = 0.0;
-                double random = AbFilter.Static.random(getRequest(), state, fieldName);
+                double random = random(state, fieldName);
 
                 for (ListIterator<AbVariation> i = variations.listIterator(variations.size());
                         i.hasPrevious();
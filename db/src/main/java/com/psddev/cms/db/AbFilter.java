@@ -14,13 +14,15 @@ import javax.servlet.http.HttpServletResponse;
 
 import com.google.common.primitives.Longs;
 import com.psddev.cms.tool.AuthenticationFilter;
-import com.psddev.cms.tool.CmsTool;
+import com.psddev.cms.tool.CmsToolSnapshot;
 import com.psddev.dari.db.ApplicationFilter;
 import com.psddev.dari.db.Database;
-import com.psddev.dari.db.Query;
 import com.psddev.dari.db.State;
 import com.psddev.dari.util.AbstractFilter;
 import com.psddev.dari.util.ObjectUtils;
+import com.psddev.dari.util.PeriodicValue;
+import com.psddev.dari.util.PullThroughValue;
+import com.psddev.dari.util.Settings;
 import com.psddev.dari.util.StringUtils;
 
 public class AbFilter extends AbstractFilter implements AbstractFilter.Auto {
@@ -28,6 +30,15 @@ public class AbFilter extends AbstractFilter implements AbstractFilter.Auto {
     private static final String SEED_COOKIE = "cms.ab";
     private static final String ATTRIBUTE_PREFIX = AbFilter.class.getName() + ".";
     private static final String SEED_ATTRIBUTE = ATTRIBUTE_PREFIX + "seed";
+    private static final String SEED_HASH_ATTRIBUTE = ATTRIBUTE_PREFIX + "seedHash";
+
+    /**
+     * Setting that switches {@link Static#random} from the MD5-based
+     * bucketing to a faster hash. Changes the bucket of most visitors, so
+     * it should only be enabled when no test is running, or when that's
+     * acceptable.
+     */
+    public static final String HASH_BUCKETING_SETTING = "brightspot/abHashBucketing";
 
     @Override
     public void updateDependencies(
@@ -45,9 +56,7 @@ public class AbFilter extends AbstractFilter implements AbstractFilter.Auto {
             FilterChain chain)
             throws IOException, ServletException {
 
-        CmsTool cms = Query.from(CmsTool.class).first();
-
-        if (cms == null || !cms.isEnableAbTesting()) {
+        if (!CmsToolSnapshot.get().isEnableAbTesting()) {
             chain.doFilter(request, response);
             return;
         }
@@ -81,6 +90,7 @@ public class AbFilter extends AbstractFilter implements AbstractFilter.Auto {
         }
 
         request.setAttribute(SEED_ATTRIBUTE, seed);
+        request.setAttribute(SEED_HASH_ATTRIBUTE, Static.hash(seed));
 
         AbDatabase ab = new AbDatabase();
 
@@ -102,12 +112,94 @@ public class AbFilter extends AbstractFilter implements AbstractFilter.Auto {
      */
     public static class Static {
 
+        // Setting reads go through a few layers of maps, so the value is
+        // refreshed periodically instead of being read for every field.
+        private static final PullThroughValue<PeriodicValue<Boolean>>
+                HASH_BUCKETING = new PullThroughValue<PeriodicValue<Boolean>>() {
+
+            @Override
+            protected PeriodicValue<Boolean> produce() {
+                return new PeriodicValue<Boolean>() {
+
+                    @Override
+                    protected Boolean update() {
+                        return Settings.get(boolean.class, HASH_BUCKETING_SETTING);
+                    }
+                };
+            }
+        };
+
+        /**
+         * Returns {@code true} if the {@link #HASH_BUCKETING_SETTING} is
+         * enabled.
+         */
+        static boolean isHashBucketing() {
+            Boolean hashBucketing = HASH_BUCKETING.get().get();
+
+            return hashBucketing != null
+                    ? hashBucketing
+                    : Settings.get(boolean.class, HASH_BUCKETING_SETTING);
+        }
+
+        /**
+         * Returns a number between {@code 0.0} (inclusive) and {@code 1.0}
+         * (exclusive) that's stable for the visitor of the given
+         * {@code request}, the given {@code state} and {@code fieldName}.
+         */
         public static double random(HttpServletRequest request, State state, String fieldName) {
-            byte[] md5 = StringUtils.md5(String.valueOf(request.getAttribute(SEED_ATTRIBUTE)) + state.getId() + fieldName);
-            long seed = Longs.fromByteArray(md5);
-            double random = new Random(seed).nextDouble();
+            if (isHashBucketing()) {
+                Long seedHash = (Long) request.getAttribute(SEED_HASH_ATTRIBUTE);
+
+                if (seedHash == null) {
+                    seedHash = hash(getSeed(request));
+                    request.setAttribute(SEED_HASH_ATTRIBUTE, seedHash);
+                }
+
+                return hashRandom(seedHash, state.getId(), fieldName);
+
+            } else {
+                return md5Random(getSeed(request), state.getId(), fieldName);
+            }
+        }
+
+        // Visitor seed, as used by the legacy bucketing.
+        static String getSeed(HttpServletRequest request) {
+            return String.valueOf(request.getAttribute(SEED_ATTRIBUTE));
+        }
+
+        static double md5Random(String seed, UUID id, String fieldName) {
+            byte[] md5 = StringUtils.md5(seed + id + fieldName);
+            long md5Seed = Longs.fromByteArray(md5);
+
+            return new Random(md5Seed).nextDouble();
+        }
+
+        // SplitMix64 finalizer.
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+
+        static long hash(String seed) {
+            long hash = 0x9e3779b97f4a7c15L;
+
+            for (int i = 0, length = seed.length(); i < length; ++ i) {
+                hash = mix(hash + seed.charAt(i));
+            }
+
+            return hash;
+        }
+
+        // Combines the seed hash, the ID and the field name without any
+        // allocation, and maps the top 53 bits to a double.
+        static double hashRandom(long seedHash, UUID id, String fieldName) {
+            long hash = mix(seedHash ^ id.getMostSignificantBits());
+
+            hash = mix(hash ^ id.getLeastSignificantBits());
+            hash = mix(hash ^ (fieldName != null ? fieldName.hashCode() : 0));
 
-            return random;
+            return (hash >>> 11) * 0x1.0p-53;
         }
     }
 }
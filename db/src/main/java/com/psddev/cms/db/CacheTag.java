@@ -1,8 +1,9 @@
 package com.psddev.cms.db;
 
 import java.io.IOException;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.jsp.JspException;
@@ -14,33 +15,36 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
 import com.psddev.dari.util.JspUtils;
 import com.psddev.dari.util.Settings;
 
+/**
+ * Caches the output of its body for the given {@code duration}.
+ *
+ * <p>Only one thread produces the output for a key at a time. While it's
+ * being produced, other threads are served the previous output if there is
+ * one (even if it's expired), and otherwise wait until the producer
+ * finishes.</p>
+ */
 public class CacheTag extends BodyTagSupport implements TryCatchFinally {
 
     private static final long serialVersionUID = 1L;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CacheTag.class);
-    private static final ConcurrentMap<String, Output> OUTPUT_LOCKS = new ConcurrentHashMap<String, Output>();
     private static final Cache<String, Output> OUTPUT_CACHE = CacheBuilder
             .newBuilder()
             .maximumSize(Settings.getOrDefault(int.class, "brightspot/cacheTagOutputMaximumSize", 100000))
-            .removalListener(new RemovalListener<String, Output>() {
-
-                @Override
-                public void onRemoval(RemovalNotification<String, Output> notification) {
-                    OUTPUT_LOCKS.remove(notification.getKey());
-                }
-            })
             .build();
 
     private String name;
     private long duration;
+    private boolean varyBySite;
+    private String vary;
 
-    private Output output;
+    private transient Output output;
+    private transient CompletableFuture<String> production;
+    private transient boolean producing;
+    private transient String body;
 
     public void setName(String name) {
         this.name = name;
@@ -50,76 +54,121 @@ public class CacheTag extends BodyTagSupport implements TryCatchFinally {
         this.duration = duration;
     }
 
+    /**
+     * @param varyBySite If {@code true}, the output is cached separately
+     * for each site.
+     */
+    public void setVaryBySite(boolean varyBySite) {
+        this.varyBySite = varyBySite;
+    }
+
+    /**
+     * @param vary Nullable. If non-{@code null}, the output is cached
+     * separately for each value (for example, a device class).
+     */
+    public void setVary(String vary) {
+        this.vary = vary;
+    }
+
+    private String createKey() {
+        HttpServletRequest request = (HttpServletRequest) pageContext.getRequest();
+        StringBuilder key = new StringBuilder();
+
+        key.append(JspUtils.getCurrentServletPath(request));
+        key.append('/');
+        key.append(name);
+
+        if (varyBySite) {
+            Site site = PageFilter.Static.getSite(request);
+
+            key.append("\0site=");
+            key.append(site != null ? site.getId() : "");
+        }
+
+        if (vary != null) {
+            key.append("\0vary=");
+            key.append(vary);
+        }
+
+        return key.toString();
+    }
+
     // --- TagSupport support ---
 
     @Override
     public int doStartTag() throws JspException {
-        String key = JspUtils.getCurrentServletPath((HttpServletRequest) pageContext.getRequest()) + "/" + name;
+        String key = createKey();
+
         bodyContent = null;
-        output = OUTPUT_LOCKS.get(key);
-
-        // Output is expired? While producing, it's not considered expired
-        // because lastProduced field is set far in the future.
-        if (output != null
-                && System.currentTimeMillis() - output.lastProduced > duration) {
-            setOutput(output, null);
-            OUTPUT_LOCKS.remove(key);
-            OUTPUT_CACHE.invalidate(key);
-            output = null;
+        output = OUTPUT_CACHE.asMap().computeIfAbsent(key, Output::new);
+        production = null;
+        producing = false;
+        body = null;
+
+        Output.Produced produced = output.produced;
+
+        // Fresh output.
+        if (produced != null
+                && System.currentTimeMillis() - produced.time <= duration) {
+
+            body = produced.body;
+            return SKIP_BODY;
         }
 
-        // Output isn't cached, so flag it to be produced.
-        if (output == null) {
-            output = new Output();
-            output.key = key;
-
-            // Make sure there's only one producing output at [R].
-            Output o = OUTPUT_LOCKS.putIfAbsent(key, output);
-            if (o == null) {
-                OUTPUT_CACHE.put(key, output);
-                LOGGER.debug("Producing [{}] in [{}]", key, Thread.currentThread());
-                return EVAL_BODY_BUFFERED;
-            }
+        // Missing or expired, so try to become the only producer.
+        CompletableFuture<String> future = new CompletableFuture<>();
 
-            output = o;
+        if (output.production.compareAndSet(null, future)) {
+            production = future;
+            producing = true;
+            LOGGER.debug("Producing [{}] in [{}]", key, Thread.currentThread());
+            return EVAL_BODY_BUFFERED;
         }
 
-        return SKIP_BODY;
-    }
+        // Another thread is producing, so serve the stale output, or wait
+        // for the new one in doEndTag if there isn't any.
+        produced = output.produced;
 
-    private void setOutput(Output output, String body) {
-        synchronized (output) {
-            output.body = body;
-            output.lastProduced = System.currentTimeMillis();
-            output.notifyAll();
-            LOGGER.debug("Produced [{}] at [{}]", output.key, output.lastProduced);
+        if (produced != null) {
+            body = produced.body;
+
+        } else {
+            production = output.production.get();
+
+            // Finished in the meantime.
+            if (production == null) {
+                produced = output.produced;
+                body = produced != null ? produced.body : null;
+            }
         }
+
+        return SKIP_BODY;
     }
 
     @Override
     public int doEndTag() throws JspException {
-        String body;
 
-        // [R] Cache the produced output and wake up all other threads
-        // that might be waiting.
-        if (bodyContent != null) {
-            body = bodyContent.getString();
-            setOutput(output, body);
+        // Cache the produced output and wake up all other threads that
+        // might be waiting.
+        if (producing) {
+            body = bodyContent != null ? bodyContent.getString() : "";
+            output.produced = new Output.Produced(body, System.currentTimeMillis());
+            finishProduction(body);
+            LOGGER.debug("Produced [{}]", output.key);
 
         // Wait if another thread is producing output.
-        } else {
+        } else if (production != null) {
             try {
-                synchronized (output) {
-                    while (output.lastProduced == Output.PRODUCING) {
-                        LOGGER.debug("Waiting for production of [{}] in [{}]", output.key, Thread.currentThread());
-                        output.wait(1000);
-                    }
-                }
-            } catch (InterruptedException ex) {
-                throw new JspException(ex);
-            }
+                LOGGER.debug("Waiting for production of [{}] in [{}]", output.key, Thread.currentThread());
+                body = production.get();
+
+            } catch (ExecutionException error) {
+                body = null;
 
-            body = output.body;
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                throw new JspException(error);
+            }
         }
 
         try {
@@ -133,26 +182,52 @@ public class CacheTag extends BodyTagSupport implements TryCatchFinally {
         return EVAL_PAGE;
     }
 
+    private void finishProduction(String body) {
+        output.production.compareAndSet(production, null);
+        production.complete(body);
+        producing = false;
+    }
+
     // --- TryCatchFinally support ---
 
     @Override
     public void doCatch(Throwable error) throws Throwable {
-        setOutput(output, null);
-        OUTPUT_LOCKS.remove(output.key);
-        OUTPUT_CACHE.invalidate(output.key);
         throw error;
     }
 
     @Override
     public void doFinally() {
+
+        // Failed to produce, so let the waiting threads go without any
+        // output, and the next request try again.
+        if (producing) {
+            finishProduction(null);
+        }
+
+        output = null;
+        production = null;
+        body = null;
     }
 
     private static class Output {
 
-        public static final long PRODUCING = Long.MAX_VALUE;
+        public final String key;
+        public final AtomicReference<CompletableFuture<String>> production = new AtomicReference<>();
+        public volatile Produced produced;
+
+        public Output(String key) {
+            this.key = key;
+        }
+
+        public static class Produced {
+
+            public final String body;
+            public final long time;
 
-        public String key;
-        public String body;
-        public long lastProduced = PRODUCING;
+            public Produced(String body, long time) {
+                this.body = body;
+                this.time = time;
+            }
+        }
     }
 }
@@ -23,4 +23,9 @@ public class DeviceRule extends Rule {
     public boolean evaluate(Variation variation, Profile profile, Object object) {
         return getType().evaluate(profile);
     }
+
+    @Override
+    public boolean isObjectDependent() {
+        return false;
+    }
 }
@@ -759,14 +759,10 @@ public class Directory extends Record {
 
             if (slashAt > -1) {
                 String name = path.substring(slashAt + 1);
-                path = path.substring(0, slashAt + 1);
-                Directory directory = Query
-                        .from(Directory.class)
-                        .where("path = ?", path)
-                        .first();
+                UUID directoryId = findDirectoryId(path.substring(0, slashAt + 1));
 
-                if (directory != null) {
-                    String rawPath = directory.getRawPath() + name;
+                if (directoryId != null) {
+                    String rawPath = directoryId + "/" + name;
                     Object item = null;
 
                     if (site != null) {
@@ -784,7 +780,75 @@ public class Directory extends Record {
             return null;
         }
 
+        /**
+         * Finds the ID of the directory at the given normalized
+         * {@code path}, consulting the {@link DirectoryPathIndex} first.
+         */
+        private static UUID findDirectoryId(String path) {
+            DirectoryPathIndex index = DirectoryPathIndex.getInstance();
+            UUID directoryId = index.findDirectoryId(path);
+
+            if (directoryId == null) {
+                Directory directory = Query
+                        .from(Directory.class)
+                        .where("path = ?", path)
+                        .first();
+
+                if (directory != null) {
+                    index.putDirectory(directory);
+                    directoryId = directory.getId();
+                }
+            }
+
+            return directoryId;
+        }
+
+        /**
+         * Finds the IDs of the directories at the given normalized
+         * {@code paths} using the {@link DirectoryPathIndex} and at most
+         * one query for the paths that aren't indexed.
+         *
+         * @param paths Nonnull.
+         * @return Nonnull. Doesn't contain the paths without a directory.
+         */
+        static Map<String, UUID> findDirectoryIds(Collection<String> paths) {
+            DirectoryPathIndex index = DirectoryPathIndex.getInstance();
+            Map<String, UUID> directoryIds = new LinkedHashMap<String, UUID>();
+            List<String> missingPaths = new ArrayList<String>();
+
+            for (String path : paths) {
+                UUID directoryId = index.findDirectoryId(path);
+
+                if (directoryId != null) {
+                    directoryIds.put(path, directoryId);
+
+                } else {
+                    missingPaths.add(path);
+                }
+            }
+
+            if (!missingPaths.isEmpty()) {
+                for (Directory directory : Query
+                        .from(Directory.class)
+                        .where("path = ?", missingPaths)
+                        .selectAll()) {
+
+                    index.putDirectory(directory);
+                    directoryIds.put(directory.getPath(), directory.getId());
+                }
+            }
+
+            return directoryIds;
+        }
+
         private static Object findByRawPath(String rawPath) {
+            DirectoryPathIndex index = DirectoryPathIndex.getInstance();
+            Object indexed = index.findObject(rawPath);
+
+            if (indexed != null) {
+                return indexed;
+            }
+
             Set<Object> invisibles = null;
 
             while (true) {
@@ -808,6 +872,7 @@ public class Directory extends Record {
                 }
 
                 if (item != null) {
+                    index.putObject(rawPath, item);
                     return item;
 
                 } else if (invisibles != null && !invisibles.isEmpty()) {
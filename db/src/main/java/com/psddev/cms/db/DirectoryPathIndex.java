@@ -0,0 +1,198 @@
+package com.psddev.cms.db;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.psddev.dari.db.Database;
+import com.psddev.dari.db.Query;
+import com.psddev.dari.db.State;
+import com.psddev.dari.db.UpdateNotifier;
+
+/**
+ * Resident index of directory paths to directory IDs and raw paths to
+ * object IDs, used by {@link Directory.Static#findByPath} to avoid querying
+ * the database on every front-end request.
+ *
+ * <p>The index is only consulted while it's {@linkplain #register
+ * registered} as an update notifier on a database, which keeps it current
+ * as directories and objects with paths are saved.</p>
+ *
+ * <p>Only the IDs are kept. The objects themselves are always loaded by ID
+ * through the current default database, so that any per-request override,
+ * such as the preview, the variations or the A/B tests, still applies, and
+ * the object is checked to be visible at the raw path again each time.</p>
+ */
+final class DirectoryPathIndex implements UpdateNotifier<Object> {
+
+    private static final DirectoryPathIndex INSTANCE = new DirectoryPathIndex();
+
+    private final Cache<String, UUID> directoryIds = CacheBuilder
+            .newBuilder()
+            .maximumSize(10000)
+            .build();
+
+    private final Cache<String, UUID> objectIds = CacheBuilder
+            .newBuilder()
+            .maximumSize(50000)
+            .build();
+
+    private volatile Database database;
+
+    private DirectoryPathIndex() {
+    }
+
+    /**
+     * Returns the singleton instance.
+     *
+     * @return Nonnull.
+     */
+    public static DirectoryPathIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts listening to the updates in the given {@code database} and
+     * enables the index.
+     *
+     * @param database Nonnull.
+     */
+    public synchronized void register(Database database) {
+        unregister();
+        invalidateAll();
+        database.addUpdateNotifier(this);
+        this.database = database;
+    }
+
+    /**
+     * Stops listening to the updates and disables the index.
+     */
+    public synchronized void unregister() {
+        if (database != null) {
+            database.removeUpdateNotifier(this);
+            database = null;
+        }
+
+        invalidateAll();
+    }
+
+    /**
+     * Returns {@code true} if the index is registered and can be used.
+     */
+    public boolean isEnabled() {
+        return database != null;
+    }
+
+    /**
+     * Removes all entries from the index.
+     */
+    public void invalidateAll() {
+        directoryIds.invalidateAll();
+        objectIds.invalidateAll();
+    }
+
+    /**
+     * Finds the ID of the directory at the given normalized {@code path}.
+     *
+     * @param path Nonnull.
+     * @return {@code null} if the index is disabled or the path isn't indexed.
+     */
+    public UUID findDirectoryId(String path) {
+        return isEnabled() ? directoryIds.getIfPresent(path) : null;
+    }
+
+    /**
+     * Adds the given {@code directory} to the index.
+     *
+     * @param directory Nonnull.
+     */
+    public void putDirectory(Directory directory) {
+        String path = directory.getPath();
+
+        if (isEnabled() && path != null) {
+            directoryIds.put(path, directory.getId());
+        }
+    }
+
+    /**
+     * Finds the object associated with the given {@code rawPath}, loading
+     * it by ID through the current default database.
+     *
+     * @param rawPath Nonnull.
+     * @return {@code null} if the index is disabled, the raw path isn't
+     * indexed, or the indexed object is no longer visible at it.
+     */
+    public Object findObject(String rawPath) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        UUID objectId = objectIds.getIfPresent(rawPath);
+
+        if (objectId == null) {
+            return null;
+        }
+
+        Object object = Query
+                .fromAll()
+                .where("_id = ?", objectId)
+                .first();
+
+        if (object != null && isIndexable(object, rawPath)) {
+            return object;
+
+        } else {
+            objectIds.invalidate(rawPath);
+            return null;
+        }
+    }
+
+    /**
+     * Adds the given {@code object} at the given {@code rawPath} to the
+     * index, as long as it's visible there.
+     *
+     * @param rawPath Nonnull.
+     * @param object Nonnull.
+     */
+    public void putObject(String rawPath, Object object) {
+        if (isEnabled() && isIndexable(object, rawPath)) {
+            objectIds.put(rawPath, State.getInstance(object).getId());
+        }
+    }
+
+    private boolean isIndexable(Object object, String rawPath) {
+        State state = State.getInstance(object);
+
+        return state.isVisible()
+                && state.as(Directory.ObjectModification.class).getRawPaths().contains(rawPath);
+    }
+
+    // --- UpdateNotifier support ---
+
+    @Override
+    public void onUpdate(Object object) {
+        if (object instanceof Directory) {
+            Directory directory = (Directory) object;
+            UUID directoryId = directory.getId();
+
+            directoryIds.asMap().values().removeIf(directoryId::equals);
+            putDirectory(directory);
+            return;
+        }
+
+        State state = State.getInstance(object);
+        UUID objectId = state.getId();
+        List<String> rawPaths = state.as(Directory.ObjectModification.class).getRawPaths();
+        boolean visible = state.isVisible();
+
+        for (String rawPath : rawPaths) {
+            if (visible) {
+                objectIds.put(rawPath, objectId);
+
+            } else {
+                objectIds.invalidate(rawPath);
+            }
+        }
+    }
+}
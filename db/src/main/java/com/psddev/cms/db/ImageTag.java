@@ -14,6 +14,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.jsp.JspException;
 import javax.servlet.jsp.JspWriter;
@@ -21,6 +22,8 @@ import javax.servlet.jsp.PageContext;
 import javax.servlet.jsp.tagext.DynamicAttributes;
 import javax.servlet.jsp.tagext.TagSupport;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.psddev.dari.util.CompactMap;
 import com.psddev.dari.util.HtmlWriter;
 import com.psddev.dari.util.ImageEditorPrivateUrl;
@@ -57,6 +60,14 @@ public class ImageTag extends TagSupport implements DynamicAttributes {
     protected static final String ORIGINAL_WIDTH_METADATA_PATH = "image/originalWidth";
     protected static final String ORIGINAL_HEIGHT_METADATA_PATH = "image/originalHeight";
 
+    // Bounded so that galleries don't push everything else out, and expired
+    // so that changes to the image editor settings are eventually picked up.
+    private static final Cache<EditedImageKey, EditedImage> EDITED_IMAGES = CacheBuilder
+            .newBuilder()
+            .maximumSize(Settings.getOrDefault(long.class, "brightspot/imageTagCacheMaximumSize", 10000L))
+            .expireAfterWrite(Settings.getOrDefault(long.class, "brightspot/imageTagCacheDuration", 600L), TimeUnit.SECONDS)
+            .build();
+
     protected Builder tagBuilder = new Builder();
     private static Boolean useHotSpotCrop;
 
@@ -626,14 +637,7 @@ public class ImageTag extends TagSupport implements DynamicAttributes {
     }
 
     protected static StandardImageSize getStandardImageSizeByName(String size) {
-        StandardImageSize standardImageSize = null;
-        for (StandardImageSize standardSize : StandardImageSize.findAll()) {
-            if (standardSize.getInternalName().equals(size)) {
-                standardImageSize = standardSize;
-                break;
-            }
-        }
-        return standardImageSize;
+        return StandardImageSize.findByInternalName(size);
     }
 
     /**
@@ -1119,7 +1123,52 @@ public class ImageTag extends TagSupport implements DynamicAttributes {
         public Map<String, String> toAttributes() {
             // set all the attributes
             Map<String, String> attributes = new LinkedHashMap<String, String>();
+            EditedImage edited;
+
+            // Private URLs may expire, so they're never cached.
+            if (this.state == null && this.item != null && !privateUrl) {
+                EditedImageKey key = new EditedImageKey(this);
+
+                edited = EDITED_IMAGES.getIfPresent(key);
+
+                if (edited == null) {
+                    edited = editImage();
+
+                    if (edited != null) {
+                        EDITED_IMAGES.put(key, edited);
+                    }
+                }
+
+            } else {
+                edited = editImage();
+            }
+
+            if (edited != null) {
+                if (edited.url != null) {
+                    attributes.put(srcAttribute != null ? srcAttribute : "src", edited.url);
+                }
+
+                if (edited.width != null && !hideDimensions) {
+                    attributes.put("width", String.valueOf(edited.width));
+                }
+                if (edited.height != null && !hideDimensions) {
+                    attributes.put("height", String.valueOf(edited.height));
+                }
+
+                if (this.attributes != null) {
+                    attributes.putAll(this.attributes);
+                }
+            }
+
+            if (standardImageSize != null) {
+                attributes.put("data-size", standardImageSize.getInternalName());
+            }
+
+            return attributes;
+        }
 
+        // Applies the size, the crops and the edits to the image.
+        private EditedImage editImage() {
             ImageEditor editor = this.editor;
 
             StandardImageSize standardImageSize = this.standardImageSize;
@@ -1129,9 +1178,6 @@ public class ImageTag extends TagSupport implements DynamicAttributes {
             CropOption cropOption = this.cropOption;
             ResizeOption resizeOption = this.resizeOption;
 
-            String srcAttr = this.srcAttribute;
-            boolean hideDimensions = this.hideDimensions;
-
             StorageItem item = null;
             Integer originalWidth = null;
             Integer originalHeight = null;
@@ -1365,30 +1411,155 @@ public class ImageTag extends TagSupport implements DynamicAttributes {
                     item = ImageEditor.Static.resize(editor, item, options, width, height);
                 }
 
-                String url = item.getPublicUrl();
-                if (url != null) {
-                    attributes.put(srcAttr != null ? srcAttr : "src", url);
-                }
+                return new EditedImage(
+                        item.getPublicUrl(),
+                        findDimension(item, "width"),
+                        findDimension(item, "height"));
+            }
 
-                Integer newWidth = findDimension(item, "width");
-                Integer newHeight = findDimension(item, "height");
-                if (newWidth != null && !hideDimensions) {
-                    attributes.put("width", String.valueOf(newWidth));
-                }
-                if (newHeight != null && !hideDimensions) {
-                    attributes.put("height", String.valueOf(newHeight));
-                }
+            return null;
+        }
+    }
 
-                if (this.attributes != null) {
-                    attributes.putAll(this.attributes);
+    // Result of Builder#editImage.
+    private static final class EditedImage {
+
+        public final String url;
+        public final Integer width;
+        public final Integer height;
+
+        public EditedImage(String url, Integer width, Integer height) {
+            this.url = url;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    // Everything that Builder#editImage depends on for a storage item. Only
+    // the metadata that the editing reads is included, rather than all of it
+    // (for example, EXIF), and it's serialized so that the key can't change
+    // if the metadata maps are modified afterwards.
+    private static final class EditedImageKey {
+
+        private static final String[] EDIT_METADATA_KEYS = {
+                "width",
+                "height",
+                "cms.crops",
+                "cms.focus",
+                "cms.edits",
+                "cms.hotspots",
+                "resizes" };
+
+        private final String storage;
+        private final String path;
+        private final String editMetadata;
+        private final ImageEditor editor;
+        private final UUID standardImageSizeId;
+        private final int standardWidth;
+        private final int standardHeight;
+        private final CropOption standardCropOption;
+        private final ResizeOption standardResizeOption;
+        private final Integer width;
+        private final Integer height;
+        private final CropOption cropOption;
+        private final ResizeOption resizeOption;
+        private final boolean disableHotSpotCrop;
+        private final boolean edits;
+
+        public EditedImageKey(Builder builder) {
+            StorageItem item = builder.item;
+            StandardImageSize standardImageSize = builder.standardImageSize;
+            Map<String, Object> metadata = item.getMetadata();
+
+            this.storage = item.getStorage();
+            this.path = item.getPath();
+            this.editMetadata = metadata != null ? toEditMetadata(metadata) : null;
+            this.editor = builder.editor != null ? builder.editor : ImageEditor.Static.getDefault();
+            this.standardImageSizeId = standardImageSize != null ? standardImageSize.getId() : null;
+            this.standardWidth = standardImageSize != null ? standardImageSize.getWidth() : 0;
+            this.standardHeight = standardImageSize != null ? standardImageSize.getHeight() : 0;
+            this.standardCropOption = standardImageSize != null ? standardImageSize.getCropOption() : null;
+            this.standardResizeOption = standardImageSize != null ? standardImageSize.getResizeOption() : null;
+            this.width = builder.width;
+            this.height = builder.height;
+            this.cropOption = builder.cropOption;
+            this.resizeOption = builder.resizeOption;
+            this.disableHotSpotCrop = builder.disableHotSpotCrop;
+            this.edits = builder.edits;
+        }
+
+        private static String toEditMetadata(Map<String, Object> metadata) {
+            Map<String, Object> editMetadata = new LinkedHashMap<>();
+
+            for (String key : EDIT_METADATA_KEYS) {
+                Object value = metadata.get(key);
+
+                if (value != null) {
+                    editMetadata.put(key, value);
                 }
             }
 
-            if (standardImageSize != null) {
-                attributes.put("data-size", standardImageSize.getInternalName());
+            Object originalWidth = CollectionUtils.getByPath(metadata, ORIGINAL_WIDTH_METADATA_PATH);
+            Object originalHeight = CollectionUtils.getByPath(metadata, ORIGINAL_HEIGHT_METADATA_PATH);
+
+            if (originalWidth != null) {
+                editMetadata.put(ORIGINAL_WIDTH_METADATA_PATH, originalWidth);
             }
 
-            return attributes;
+            if (originalHeight != null) {
+                editMetadata.put(ORIGINAL_HEIGHT_METADATA_PATH, originalHeight);
+            }
+
+            return ObjectUtils.toJson(editMetadata);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+
+            } else if (other instanceof EditedImageKey) {
+                EditedImageKey otherKey = (EditedImageKey) other;
+
+                return ObjectUtils.equals(path, otherKey.path)
+                        && ObjectUtils.equals(editMetadata, otherKey.editMetadata)
+                        && ObjectUtils.equals(storage, otherKey.storage)
+                        && editor == otherKey.editor
+                        && ObjectUtils.equals(standardImageSizeId, otherKey.standardImageSizeId)
+                        && standardWidth == otherKey.standardWidth
+                        && standardHeight == otherKey.standardHeight
+                        && standardCropOption == otherKey.standardCropOption
+                        && standardResizeOption == otherKey.standardResizeOption
+                        && ObjectUtils.equals(width, otherKey.width)
+                        && ObjectUtils.equals(height, otherKey.height)
+                        && cropOption == otherKey.cropOption
+                        && resizeOption == otherKey.resizeOption
+                        && disableHotSpotCrop == otherKey.disableHotSpotCrop
+                        && edits == otherKey.edits;
+
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return ObjectUtils.hashCode(
+                    storage,
+                    path,
+                    editMetadata,
+                    System.identityHashCode(editor),
+                    standardImageSizeId,
+                    standardWidth,
+                    standardHeight,
+                    standardCropOption,
+                    standardResizeOption,
+                    width,
+                    height,
+                    cropOption,
+                    resizeOption,
+                    disableHotSpotCrop,
+                    edits);
         }
     }
 
@@ -1,7 +1,7 @@
 package com.psddev.cms.db;
 
 import com.ibm.icu.text.MessageFormat;
-import com.psddev.cms.tool.CmsTool;
+import com.psddev.cms.tool.CmsToolSnapshot;
 import com.psddev.cms.tool.MachineTranslations;
 import com.psddev.dari.db.DatabaseEnvironment;
 import com.psddev.dari.db.ObjectField;
@@ -156,10 +156,7 @@ public class LocalizationContext {
             return new MessageFormat(pattern, target).format(arguments);
 
         } else {
-            String googleServerApiKey = Query
-                    .from(CmsTool.class)
-                    .first()
-                    .getGoogleServerApiKey();
+            String googleServerApiKey = CmsToolSnapshot.get().getGoogleServerApiKey();
 
             if (ObjectUtils.isBlank(googleServerApiKey)) {
                 return new MessageFormat(pattern, source).format(arguments);
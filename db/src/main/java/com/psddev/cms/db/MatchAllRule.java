@@ -34,4 +34,14 @@ public class MatchAllRule extends Rule {
         }
         return true;
     }
+
+    @Override
+    public boolean isObjectDependent() {
+        for (Rule rule : getRules()) {
+            if (rule.isObjectDependent()) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
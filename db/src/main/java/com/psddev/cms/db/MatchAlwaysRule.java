@@ -11,4 +11,9 @@ public class MatchAlwaysRule extends Rule {
     public boolean evaluate(Variation variation, Profile profile, Object object) {
         return true;
     }
+
+    @Override
+    public boolean isObjectDependent() {
+        return false;
+    }
 }
@@ -34,4 +34,14 @@ public class MatchAnyRule extends Rule {
         }
         return false;
     }
+
+    @Override
+    public boolean isObjectDependent() {
+        for (Rule rule : getRules()) {
+            if (rule.isObjectDependent()) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -11,4 +11,9 @@ public class MatchNeverRule extends Rule {
     public boolean evaluate(Variation variation, Profile profile, Object object) {
         return false;
     }
+
+    @Override
+    public boolean isObjectDependent() {
+        return false;
+    }
 }
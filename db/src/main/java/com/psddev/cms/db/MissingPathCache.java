@@ -0,0 +1,113 @@
+package com.psddev.cms.db;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.psddev.dari.db.Database;
+import com.psddev.dari.db.State;
+import com.psddev.dari.db.UpdateNotifier;
+
+/**
+ * Bounded cache of front-end paths that are known not to resolve to any
+ * object, used by {@link PageFilter.Static#getMainObject} so that repeated
+ * requests for broken links don't pay for the full path resolution each
+ * time.
+ *
+ * <p>The cache is only used while it's {@linkplain #register registered}
+ * as an update notifier on a database, and it's cleared whenever a
+ * directory or an object with paths is saved, since that may make any of
+ * the missing paths resolvable.</p>
+ */
+final class MissingPathCache implements UpdateNotifier<Object> {
+
+    private static final MissingPathCache INSTANCE = new MissingPathCache();
+
+    private final Cache<String, Boolean> misses = CacheBuilder
+            .newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+    private volatile Database database;
+
+    private MissingPathCache() {
+    }
+
+    /**
+     * Returns the singleton instance.
+     *
+     * @return Nonnull.
+     */
+    public static MissingPathCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts listening to the updates in the given {@code database} and
+     * enables the cache.
+     *
+     * @param database Nonnull.
+     */
+    public synchronized void register(Database database) {
+        unregister();
+        database.addUpdateNotifier(this);
+        this.database = database;
+    }
+
+    /**
+     * Stops listening to the updates and disables the cache.
+     */
+    public synchronized void unregister() {
+        if (database != null) {
+            database.removeUpdateNotifier(this);
+            database = null;
+        }
+
+        misses.invalidateAll();
+    }
+
+    /**
+     * Returns {@code true} if the given {@code path} in the given
+     * {@code site} is known not to resolve to any object.
+     *
+     * @param site Nullable.
+     * @param path Nonnull.
+     */
+    public boolean isMissing(Site site, String path) {
+        return database != null && misses.getIfPresent(createKey(site, path)) != null;
+    }
+
+    /**
+     * Records that the given {@code path} in the given {@code site} doesn't
+     * resolve to any object.
+     *
+     * @param site Nullable.
+     * @param path Nonnull.
+     */
+    public void putMissing(Site site, String path) {
+        if (database != null) {
+            misses.put(createKey(site, path), Boolean.TRUE);
+        }
+    }
+
+    // Trailing slash isn't normalized away, since it changes which
+    // wildcard paths are checked.
+    private String createKey(Site site, String path) {
+        UUID siteId = site != null ? site.getId() : null;
+
+        return siteId != null ? siteId + ":" + path : path;
+    }
+
+    // --- UpdateNotifier support ---
+
+    @Override
+    public void onUpdate(Object object) {
+        if (object instanceof Directory
+                || !State.getInstance(object).as(Directory.ObjectModification.class).getRawPaths().isEmpty()) {
+
+            misses.invalidateAll();
+        }
+    }
+}
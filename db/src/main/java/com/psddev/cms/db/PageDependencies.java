@@ -0,0 +1,133 @@
+package com.psddev.cms.db;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.psddev.dari.db.State;
+
+/**
+ * Objects read while rendering a page in {@link PageFilter}, used by
+ * {@link PageOutputCache} and {@link PageValidator} to decide whether, and
+ * for how long, the output can be reused.
+ *
+ * <p>The objects are recorded by {@link VaryingDatabase}. The page is
+ * {@linkplain #isPersonalized personalized} if any variation or A/B test
+ * could have changed them for the current visitor, and
+ * {@linkplain #isTracked untracked} if the output depended on something
+ * other than the objects themselves, such as a count.</p>
+ *
+ * <p>Instances are safe to use from multiple threads, since view models
+ * may be resolved in parallel.</p>
+ */
+final class PageDependencies {
+
+    private static final String ATTRIBUTE = PageDependencies.class.getName();
+
+    private final long started = System.nanoTime();
+    private final Set<UUID> ids = ConcurrentHashMap.newKeySet();
+    private volatile boolean personalized;
+    private volatile boolean untracked;
+
+    /**
+     * Starts recording the dependencies of the given {@code request}, unless
+     * they're already being recorded.
+     *
+     * @param request Nonnull.
+     * @return Nonnull.
+     */
+    public static PageDependencies start(HttpServletRequest request) {
+        PageDependencies dependencies = get(request);
+
+        if (dependencies == null) {
+            dependencies = new PageDependencies();
+            request.setAttribute(ATTRIBUTE, dependencies);
+        }
+
+        return dependencies;
+    }
+
+    /**
+     * Returns the dependencies being recorded for the given
+     * {@code request}.
+     *
+     * @param request Nullable.
+     * @return {@code null} if the dependencies aren't being recorded.
+     */
+    public static PageDependencies get(HttpServletRequest request) {
+        return request != null ? (PageDependencies) request.getAttribute(ATTRIBUTE) : null;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime} when the recording started.
+     */
+    public long getStarted() {
+        return started;
+    }
+
+    /**
+     * Records the given {@code object} as a dependency.
+     *
+     * @param object Nullable.
+     */
+    public void add(Object object) {
+        if (object != null) {
+            State state = State.getInstance(object);
+
+            if (!state.isNew()) {
+                ids.add(state.getId());
+            }
+        }
+    }
+
+    /**
+     * Records all given {@code objects} as dependencies.
+     *
+     * @param objects Nonnull.
+     */
+    public void addAll(Iterable<?> objects) {
+        for (Object object : objects) {
+            add(object);
+        }
+    }
+
+    /**
+     * Returns the IDs of all the objects recorded so far.
+     *
+     * @return Nonnull. Unmodifiable.
+     */
+    public Set<UUID> getIds() {
+        return Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * Returns {@code true} if the output may vary by visitor.
+     */
+    public boolean isPersonalized() {
+        return personalized;
+    }
+
+    /**
+     * Marks the output as varying by visitor.
+     */
+    public void setPersonalized() {
+        personalized = true;
+    }
+
+    /**
+     * Returns {@code true} if all the dependencies were recorded.
+     */
+    public boolean isTracked() {
+        return !untracked;
+    }
+
+    /**
+     * Marks the output as depending on something that can't be recorded.
+     */
+    public void setUntracked() {
+        untracked = true;
+    }
+}
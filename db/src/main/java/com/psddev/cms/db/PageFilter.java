@@ -7,6 +7,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -22,6 +23,7 @@ import java.util.regex.Pattern;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
@@ -34,11 +36,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.psddev.cms.tool.AuthenticationFilter;
 import com.psddev.cms.tool.CmsTool;
+import com.psddev.cms.tool.CmsToolSnapshot;
 import com.psddev.cms.tool.RemoteWidgetFilter;
 import com.psddev.cms.tool.ToolPageContext;
 import com.psddev.cms.view.AbstractViewCreator;
+import com.psddev.cms.view.CachingViewTemplateLoader;
 import com.psddev.cms.view.JsonViewRenderer;
 import com.psddev.cms.view.PageViewClass;
+import com.psddev.cms.view.StreamOutput;
+import com.psddev.cms.view.StreamingViewOutput;
 import com.psddev.cms.view.ViewBinding;
 import com.psddev.cms.view.ViewCreator;
 import com.psddev.cms.view.ViewMapping;
@@ -51,6 +57,7 @@ import com.psddev.cms.view.servlet.ServletViewTemplateLoader;
 import com.psddev.cms.view.servlet.ServletViewModelCreator;
 import com.psddev.cms.view.servlet.ServletViewRequestAnnotationProcessor;
 import com.psddev.cms.view.servlet.ServletViewRequestAnnotationProcessorClass;
+import com.psddev.cms.view.ViewResolverExecutor;
 import com.psddev.cms.view.ViewResponse;
 import com.psddev.dari.db.Application;
 import com.psddev.dari.db.ApplicationFilter;
@@ -107,6 +114,7 @@ public class PageFilter extends AbstractFilter {
     private static final String PREVIEW_ATTRIBUTE = ".preview";
     private static final String PERSISTENT_PREVIEW_ATTRIBUTE = ".persistentPreview";
     private static final String VIEW_TEMPLATE_LOADER_ATTRIBUTE = ATTRIBUTE_PREFIX + ".viewTemplateLoader";
+    private static final String SHARED_VIEW_TEMPLATE_LOADER_ATTRIBUTE = ATTRIBUTE_PREFIX + ".sharedViewTemplateLoader";
 
     public static final String ABORTED_ATTRIBUTE = ATTRIBUTE_PREFIX + ".aborted";
     public static final String CURRENT_SECTION_ATTRIBUTE = ATTRIBUTE_PREFIX + ".currentSection";
@@ -133,6 +141,9 @@ public class PageFilter extends AbstractFilter {
     public static final String VIEW_TYPE_PARAMETER = "_viewType";
 
     private boolean poweredBy;
+    private boolean pageValidators;
+    private String pageValidatorVersion;
+    private long pageValidatorDuration;
 
     /**
      * Returns {@code true} if rendering the given {@code request} has
@@ -276,7 +287,21 @@ public class PageFilter extends AbstractFilter {
         ViewTemplateLoader loader = (ViewTemplateLoader) request.getAttribute(VIEW_TEMPLATE_LOADER_ATTRIBUTE);
 
         if (loader == null) {
-            loader = new ServletViewTemplateLoader(request.getServletContext());
+            ServletContext context = request.getServletContext();
+            loader = (ViewTemplateLoader) context.getAttribute(SHARED_VIEW_TEMPLATE_LOADER_ATTRIBUTE);
+
+            // Shared across requests so that the templates stay in memory.
+            if (loader == null) {
+                loader = new CachingViewTemplateLoader(
+                        new ServletViewTemplateLoader(context),
+                        Settings.getOrDefault(
+                                long.class,
+                                "brightspot/viewTemplateRevalidationInterval",
+                                Settings.isProduction() ? -1L : 1000L));
+
+                context.setAttribute(SHARED_VIEW_TEMPLATE_LOADER_ATTRIBUTE, loader);
+            }
+
             setViewTemplateLoader(request, loader);
         }
 
@@ -331,6 +356,40 @@ public class PageFilter extends AbstractFilter {
     @Override
     protected void doInit() throws Exception {
         poweredBy = Settings.getOrDefault(boolean.class, "brightspot/poweredBy", Boolean.TRUE);
+        pageValidators = Settings.getOrDefault(boolean.class, "brightspot/pageValidators", Boolean.FALSE);
+        pageValidatorVersion = Settings.get(String.class, "brightspot/pageValidatorVersion");
+        pageValidatorDuration = Settings.getOrDefault(long.class, "brightspot/pageValidatorDuration", 60000L);
+
+        Database database = Database.Static.getDefault();
+
+        DirectoryPathIndex.getInstance().register(database);
+        MissingPathCache.getInstance().register(database);
+        RichTextPublishableCache.getInstance().register(database);
+        CmsToolSnapshot.register(database);
+
+        long pageCacheDuration = Settings.getOrDefault(long.class, "brightspot/pageCacheDuration", 0L);
+
+        if (pageCacheDuration > 0) {
+            String varyHeaders = Settings.get(String.class, "brightspot/pageCacheVaryHeaders");
+
+            PageOutputCache.getInstance().register(
+                    database,
+                    pageCacheDuration,
+                    Settings.getOrDefault(long.class, "brightspot/pageCacheMaximumSize", 1000L),
+                    ObjectUtils.isBlank(varyHeaders)
+                            ? Collections.<String>emptyList()
+                            : Arrays.asList(varyHeaders.trim().split("\\s*,\\s*")));
+        }
+    }
+
+    @Override
+    protected void doDestroy() {
+        DirectoryPathIndex.getInstance().unregister();
+        MissingPathCache.getInstance().unregister();
+        RichTextPublishableCache.getInstance().unregister();
+        CmsToolSnapshot.unregister();
+        PageOutputCache.getInstance().unregister();
+        ViewResolverExecutor.shutdown();
     }
 
     @Override
@@ -421,6 +480,7 @@ public class PageFilter extends AbstractFilter {
             FilterChain chain)
             throws IOException, ServletException {
 
+        PageDependencies dependencies = PageDependencies.start(request);
         Profile profile = Static.getProfile(request);
         Variation.Static.applyAll(TypeDefinition.getInstance(Record.class).newInstance(), profile);
 
@@ -493,6 +553,37 @@ public class PageFilter extends AbstractFilter {
                 return;
             }
 
+            // Serve anonymous requests from the page cache if possible.
+            PageOutputCache pageCache = PageOutputCache.getInstance();
+            String pageCacheKey = user == null
+                    && !servletPath.startsWith("/_preview")
+                    && AuthenticationFilter.Static.getCurrentPreview(request) == null
+                    ? pageCache.createKey(request, site)
+                    : null;
+
+            PageOutputCache.CapturingResponse pageCacheResponse = null;
+
+            if (pageCacheKey != null) {
+                PageOutputCache.Entry pageCacheEntry = pageCache.get(pageCacheKey);
+
+                if (pageCacheEntry != null) {
+                    PageValidator validator = pageCacheEntry.getValidator();
+
+                    if (validator != null && validator.isNotModified(request)) {
+                        pageCacheEntry.writeHeadersTo(response);
+                        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+                    } else {
+                        pageCacheEntry.writeTo(response);
+                    }
+
+                    return;
+                }
+
+                pageCacheResponse = new PageOutputCache.CapturingResponse(response);
+                response = pageCacheResponse;
+            }
+
             Object mainObject = Static.getMainObject(request);
             if (redirectIfFixedPath(request, response)) {
                 return;
@@ -642,9 +733,7 @@ public class PageFilter extends AbstractFilter {
                         }
                     }
 
-                    CmsTool cms = Query.from(CmsTool.class).first();
-
-                    if (user == null || (cms != null && cms.isDisableInvisibleContentPreview())) {
+                    if (user == null || CmsToolSnapshot.get().isDisableInvisibleContentPreview()) {
                         if (Settings.isProduction()) {
                             chain.doFilter(request, response);
                             return;
@@ -672,6 +761,27 @@ public class PageFilter extends AbstractFilter {
                 page = Application.Static.getInstance(CmsTool.class).getModulePreviewTemplate();
             }
 
+            // Answer conditional requests before rendering anything.
+            String pageValidatorKey = null;
+
+            if (pageValidators
+                    && user == null
+                    && !Static.isPreview(request)
+                    && ("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))) {
+
+                pageValidatorKey = PageValidator.createKey(request, site);
+                PageValidator validator = PageValidator.compute(pageValidatorKey, pageValidatorVersion, pageValidatorDuration, mainObject, page);
+
+                if (validator != null) {
+                    validator.writeHeaders(response);
+
+                    if (validator.isNotModified(request)) {
+                        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                        return;
+                    }
+                }
+            }
+
             // SEO and <head>.
             Map<String, Object> seo = new HashMap<String, Object>();
             Seo.ObjectModification seoData = mainState.as(Seo.ObjectModification.class);
@@ -839,6 +949,19 @@ public class PageFilter extends AbstractFilter {
 
             endPage(request, response, writer, page);
 
+            dependencies.addAll(getRenderedObjects(request));
+            dependencies.add(mainObject);
+            dependencies.add(page);
+
+            if (pageValidatorKey != null) {
+                PageValidator.remember(pageValidatorKey, dependencies);
+            }
+
+            if (pageCacheResponse != null) {
+                writer.flush();
+                pageCache.put(pageCacheKey, pageCacheResponse, dependencies);
+            }
+
         } finally {
             Database.Static.restoreDefault();
 
@@ -967,13 +1090,19 @@ public class PageFilter extends AbstractFilter {
 
             long cacheDuration = section != null ? section.getCacheDuration() : 0;
             if (cacheDuration > 0) {
-                SectionCacheKey key = new SectionCacheKey();
-                key.sectionId = section.getId();
-                key.cacheDuration = cacheDuration;
-                key.request = request;
-                key.response = response;
-                key.section = section;
-                writer.write(SECTION_CACHE.get(key));
+                Section cachedSection = section;
+                PageDependencies dependencies = PageDependencies.get(request);
+
+                // The cached output doesn't record what it was rendered from.
+                if (dependencies != null) {
+                    dependencies.setUntracked();
+                }
+
+                writer.write(SectionOutputCache.getInstance().get(request, section, () -> {
+                    StringWriter output = new StringWriter();
+                    writeSection(request, response, output, cachedSection);
+                    return output.toString();
+                }));
 
             } else {
                 Section previousSection = getCurrentSection(request);
@@ -1038,55 +1167,6 @@ public class PageFilter extends AbstractFilter {
         }
     }
 
-    /**
-     * Key for {@link #SECTION_CACHE} that contains extra information
-     * like the request object.
-     */
-    private static class SectionCacheKey {
-
-        public UUID sectionId;
-        public long cacheDuration;
-        public HttpServletRequest request;
-        public HttpServletResponse response;
-        public Section section;
-
-        @Override
-        public boolean equals(Object other) {
-            return this == other
-                    || (other instanceof SectionCacheKey
-                    && sectionId.equals(((SectionCacheKey) other).sectionId));
-        }
-
-        @Override
-        public int hashCode() {
-            return sectionId.hashCode();
-        }
-    }
-
-    /** Cache that contains output of each sections. */
-    private static final PullThroughCache<SectionCacheKey, String>
-            SECTION_CACHE = new PullThroughCache<SectionCacheKey, String>() {
-
-        @Override
-        protected boolean isExpired(SectionCacheKey key, Date lastProduced) {
-            return System.currentTimeMillis() - lastProduced.getTime() > key.cacheDuration;
-        }
-
-        @Override
-        protected String produce(SectionCacheKey key) throws IOException, ServletException {
-            try {
-                StringWriter writer = new StringWriter();
-                writeSection(key.request, key.response, writer, key.section);
-                return writer.toString();
-
-            } finally {
-                key.request = null;
-                key.response = null;
-                key.section = null;
-            }
-        }
-    };
-
     /*
      * 1. Find ViewModel class (check the different view types, etc.)
      * 2. Create custom ViewModelCreator
@@ -1196,7 +1276,7 @@ public class PageFilter extends AbstractFilter {
             }
         }
 
-        String output = null;
+        ViewOutput output = null;
 
         if (viewModel != null) {
 
@@ -1222,7 +1302,20 @@ public class PageFilter extends AbstractFilter {
 
                 try {
                     ViewOutput result = renderer.render(viewModel, getViewTemplateLoader(request));
-                    output = result.get();
+
+                    // Only streaming output from the view models that opt
+                    // into it is written after the headers are updated.
+                    // Buffer the rest so that any ViewResponse thrown while
+                    // rendering can still update them.
+                    if (result instanceof StreamingViewOutput
+                            && viewModel.getClass().isAnnotationPresent(StreamOutput.class)) {
+
+                        output = result;
+
+                    } else if (result != null) {
+                        String buffered = result.get();
+                        output = () -> buffered;
+                    }
 
                 } catch (RuntimeException e) {
                     ViewResponse vr = ViewResponse.findInExceptionChain(e);
@@ -1246,7 +1339,23 @@ public class PageFilter extends AbstractFilter {
 
         // 8. Write the output to the real HTTP response
         if (output != null) {
-            writer.write(output);
+            try {
+                output.writeTo(writer);
+
+            } catch (RuntimeException e) {
+                ViewResponse vr = ViewResponse.findInExceptionChain(e);
+                if (vr == null) {
+                    throw e;
+
+                } else if (response.isCommitted()) {
+                    LOGGER.warn("Ignoring the view response thrown while streaming [{}], since the response is already committed!"
+                            + " Remove @StreamOutput from the view model to buffer its output instead.",
+                            viewModel.getClass().getName());
+
+                } else {
+                    updateViewResponse(request, (HttpServletResponse) JspUtils.getHeaderResponse(request, response), vr);
+                }
+            }
         }
 
         return true;
@@ -1411,10 +1520,9 @@ public class PageFilter extends AbstractFilter {
 
         if (renderer != null) {
             ViewOutput result = renderer.render(view, getViewTemplateLoader(request));
-            String output = result.get();
 
-            if (output != null) {
-                writer.write(output);
+            if (result != null) {
+                result.writeTo(writer);
             }
 
         } else {
@@ -1759,7 +1867,7 @@ public class PageFilter extends AbstractFilter {
             if (entry != null) {
                 String path = absoluteUrl.substring(entry.getKey().length() - 1);
 
-                if (Query.from(CmsTool.class).first().isRemoveTrailingSlashes()) {
+                if (CmsToolSnapshot.get().isRemoveTrailingSlashes()) {
                     if ("/".equals(path)) {
                         fixPath(request, servletPath.substring(0, servletPath.length() - 1));
                     }
@@ -1768,7 +1876,7 @@ public class PageFilter extends AbstractFilter {
                     fixPath(request, servletPath + "/");
                 }
 
-                site = Query.from(Site.class).where("_id = ?", entry.getValue()).first();
+                site = entry.getValue();
                 setSite(request, site);
                 setPath(request, path);
             }
@@ -1811,6 +1919,8 @@ public class PageFilter extends AbstractFilter {
                 String servletPath = request.getServletPath();
                 String path = getPath(request);
                 Site site = getSite(request);
+                MissingPathCache missingPaths = MissingPathCache.getInstance();
+                boolean missing = false;
 
                 // On preview request, manually create the main object based on
                 // the post data.
@@ -1924,6 +2034,9 @@ public class PageFilter extends AbstractFilter {
                         }
                     }
 
+                } else if (missingPaths.isMissing(site, path)) {
+                    missing = true;
+
                 } else {
                     mainObject = Directory.Static.findByPath(site, path);
 
@@ -1934,7 +2047,7 @@ public class PageFilter extends AbstractFilter {
                         if (mainObject != null) {
 
                             // Except when told not to.
-                            if (Query.from(CmsTool.class).first().isRemoveTrailingSlashes()) {
+                            if (CmsToolSnapshot.get().isRemoveTrailingSlashes()) {
                                 if (path.length() > 1 && path.endsWith("/")) {
                                     fixPath(request, servletPath.substring(0, servletPath.length() - 1));
                                 }
@@ -1951,13 +2064,15 @@ public class PageFilter extends AbstractFilter {
                 }
 
                 // Case-insensitive path look-up.
-                for (int i = 0, length = path.length(); i < length; ++ i) {
-                    if (Character.isUpperCase(path.charAt(i))) {
-                        String pathLc = path.toLowerCase(Locale.ENGLISH);
-                        if (Directory.Static.findObject(site, pathLc) != null) {
-                            fixPath(request, pathLc);
+                if (!missing) {
+                    for (int i = 0, length = path.length(); i < length; ++ i) {
+                        if (Character.isUpperCase(path.charAt(i))) {
+                            String pathLc = path.toLowerCase(Locale.ENGLISH);
+                            if (Directory.Static.findObject(site, pathLc) != null) {
+                                fixPath(request, pathLc);
+                            }
+                            break;
                         }
-                        break;
                     }
                 }
 
@@ -1970,43 +2085,14 @@ public class PageFilter extends AbstractFilter {
                 // - /path/to/**
                 // - /path/**
                 // - /**
-                String checkPath;
-                int endMarker;
-
-                if (path.endsWith("/")) {
-                    checkPath = path;
-                    endMarker = 0;
-
-                } else {
-                    checkPath = path + "/";
-                    endMarker = 1;
-                }
-
-                for (int i = 0; mainObject == null; ++ i) {
-                    int slashAt = checkPath.lastIndexOf("/");
-
-                    if (slashAt < 0) {
-                        break;
-                    } else {
-                        checkPath = checkPath.substring(0, slashAt);
-                    }
-
-                    if (i <= endMarker) {
-                        mainObject = Directory.Static.findObject(site, checkPath + "/*");
-                    }
-
-                    if (mainObject == null) {
-                        mainObject = Directory.Static.findObject(site, checkPath + "/**");
-                    }
-
-                    if (mainObject instanceof Directory) {
-                        mainObject = null;
-                    }
+                if (mainObject == null && !missing) {
+                    WildcardPathResolver.Match match = WildcardPathResolver.resolve(site, path);
 
-                    if (mainObject != null) {
-                        final String pathInfo = path.substring(checkPath.length());
+                    if (match != null) {
+                        mainObject = match.getObject();
+                        final String pathInfo = path.substring(match.getPrefix().length());
 
-                        if (Query.from(CmsTool.class).first().isRemoveTrailingSlashes()) {
+                        if (CmsToolSnapshot.get().isRemoveTrailingSlashes()) {
                             if ("/".equals(pathInfo)) {
                                 fixPath(request, servletPath.substring(0, servletPath.length() - 1));
                             }
@@ -2024,6 +2110,15 @@ public class PageFilter extends AbstractFilter {
                     }
                 }
 
+                // Remember paths that don't resolve at all so that the next
+                // request for them can skip all the look-ups above.
+                if (mainObject == null
+                        && !missing
+                        && !Static.isPreview(request)
+                        && request.getAttribute(FIXED_PATH_ATTRIBUTE) == null) {
+                    missingPaths.putMissing(site, path);
+                }
+
                 if (!Static.isPreview(request) && mainObject != null) {
                     Preview preview = AuthenticationFilter.Static.getCurrentPreview(request);
 
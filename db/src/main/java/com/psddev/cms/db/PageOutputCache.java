@@ -0,0 +1,491 @@
+package com.psddev.cms.db;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.psddev.dari.db.Database;
+import com.psddev.dari.db.State;
+import com.psddev.dari.db.UpdateNotifier;
+
+/**
+ * Opt-in cache of fully rendered anonymous pages, used by
+ * {@link PageFilter}.
+ *
+ * <p>Each entry is keyed by the site, the path, the view type and the
+ * configured vary headers, and records the IDs of all the objects that
+ * were used to render it (see {@link PageDependencies}). While the cache is
+ * {@linkplain #register registered} as an update notifier on a database,
+ * saving any of those objects evicts the entry. Entries also expire after
+ * the configured duration, since not every dependency is tracked (for
+ * example, a new article that should appear in a list).</p>
+ *
+ * <p>Pages that are personalized by variations or A/B tests are never
+ * cached, since their output may be different for each visitor.</p>
+ */
+final class PageOutputCache implements UpdateNotifier<Object> {
+
+    private static final PageOutputCache INSTANCE = new PageOutputCache();
+
+    private final ConcurrentMap<UUID, Set<String>> keysByDependency = new ConcurrentHashMap<>();
+    private volatile Cache<String, Entry> entries;
+    private volatile Cache<UUID, Long> updateTimes;
+    private volatile List<String> varyHeaders = Collections.emptyList();
+    private volatile Database database;
+
+    private PageOutputCache() {
+    }
+
+    /**
+     * Returns the singleton instance.
+     *
+     * @return Nonnull.
+     */
+    public static PageOutputCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts listening to the updates in the given {@code database} and
+     * enables the cache.
+     *
+     * @param database Nonnull.
+     * @param duration Maximum time in milliseconds that an entry is kept.
+     * @param maximumSize Maximum number of entries.
+     * @param varyHeaders Nonnull. Names of the request headers that should
+     * be part of the key.
+     */
+    public synchronized void register(Database database, long duration, long maximumSize, List<String> varyHeaders) {
+        unregister();
+
+        this.entries = CacheBuilder
+                .newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(duration, TimeUnit.MILLISECONDS)
+                .removalListener(new RemovalListener<String, Entry>() {
+
+                    @Override
+                    public void onRemoval(RemovalNotification<String, Entry> notification) {
+                        Entry entry = notification.getValue();
+
+                        // Replacement re-adds the key to the dependencies.
+                        if (entry != null && notification.getCause() != RemovalCause.REPLACED) {
+                            for (UUID dependency : entry.dependencies) {
+                                Set<String> keys = keysByDependency.get(dependency);
+
+                                if (keys != null) {
+                                    keys.remove(notification.getKey());
+
+                                    if (keys.isEmpty()) {
+                                        keysByDependency.remove(dependency, keys);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                })
+                .build();
+
+        // Only needs to cover the time it takes to render a page.
+        this.updateTimes = CacheBuilder
+                .newBuilder()
+                .maximumSize(maximumSize * 10)
+                .expireAfterWrite(duration, TimeUnit.MILLISECONDS)
+                .build();
+
+        this.varyHeaders = Collections.unmodifiableList(new ArrayList<>(varyHeaders));
+
+        database.addUpdateNotifier(this);
+        this.database = database;
+    }
+
+    /**
+     * Stops listening to the updates and disables the cache.
+     */
+    public synchronized void unregister() {
+        if (database != null) {
+            database.removeUpdateNotifier(this);
+            database = null;
+        }
+
+        if (entries != null) {
+            entries.invalidateAll();
+            entries = null;
+        }
+
+        updateTimes = null;
+
+        keysByDependency.clear();
+    }
+
+    /**
+     * Returns {@code true} if the cache is registered and can be used.
+     */
+    public boolean isEnabled() {
+        return database != null;
+    }
+
+    /**
+     * Creates the cache key for the given {@code request}.
+     *
+     * @param request Nonnull.
+     * @param site Nullable.
+     * @return {@code null} if the cache is disabled or the request can't
+     * be cached, because it isn't a plain {@code GET} without a query
+     * string.
+     */
+    public String createKey(HttpServletRequest request, Site site) {
+        if (!isEnabled()
+                || !"GET".equals(request.getMethod())
+                || request.getQueryString() != null) {
+
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder();
+
+        key.append(site != null ? site.getId() : "");
+        key.append(' ');
+        key.append(PageFilter.Static.getPath(request));
+        key.append(' ');
+        key.append(PageFilter.Static.getViewType(request));
+
+        for (String header : varyHeaders) {
+            key.append(' ');
+            key.append(request.getHeader(header));
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Returns the cached entry at the given {@code key}.
+     *
+     * @param key Nullable.
+     * @return {@code null} if there isn't a cached entry.
+     */
+    public Entry get(String key) {
+        Cache<String, Entry> e = entries;
+
+        return key != null && e != null ? e.getIfPresent(key) : null;
+    }
+
+    /**
+     * Puts the output captured by the given {@code response} at the given
+     * {@code key}, as long as it's cacheable.
+     *
+     * <p>If any of the dependencies was saved after the rendering started,
+     * the output is discarded, since it may already be stale.</p>
+     *
+     * @param key Nonnull.
+     * @param response Nonnull.
+     * @param dependencies Nonnull. Objects used to render the output.
+     */
+    public void put(String key, CapturingResponse response, PageDependencies dependencies) {
+        Cache<String, Entry> e = entries;
+        Cache<UUID, Long> u = updateTimes;
+
+        if (e == null
+                || u == null
+                || !response.isCacheable()
+                || dependencies.isPersonalized()) {
+
+            return;
+        }
+
+        List<UUID> dependencyIds = new ArrayList<>(dependencies.getIds());
+
+        // Registered before the entry is put, so that an update from now on
+        // always evicts it.
+        for (UUID dependencyId : dependencyIds) {
+            keysByDependency.computeIfAbsent(dependencyId, id -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+
+        e.put(key, new Entry(response, dependencyIds));
+
+        // Updated while rendering.
+        for (UUID dependencyId : dependencyIds) {
+            Long updateTime = u.getIfPresent(dependencyId);
+
+            if (updateTime != null && updateTime - dependencies.getStarted() >= 0) {
+                e.invalidate(key);
+                break;
+            }
+        }
+    }
+
+    // --- UpdateNotifier support ---
+
+    @Override
+    public void onUpdate(Object object) {
+        Cache<String, Entry> e = entries;
+        Cache<UUID, Long> u = updateTimes;
+        UUID id = State.getInstance(object).getId();
+
+        if (u != null) {
+            u.put(id, System.nanoTime());
+        }
+
+        Set<String> keys = keysByDependency.remove(id);
+
+        if (e != null && keys != null) {
+            e.invalidateAll(keys);
+        }
+    }
+
+    /**
+     * Cached page output along with the response headers that were set
+     * while rendering it.
+     */
+    public static final class Entry {
+
+        private final String contentType;
+        private final Map<String, List<String>> headers;
+        private final String output;
+        private final List<UUID> dependencies;
+        private final PageValidator validator;
+
+        private Entry(CapturingResponse response, List<UUID> dependencies) {
+            this.contentType = response.getContentType();
+            this.headers = response.headers;
+            this.output = response.capture.toString();
+            this.dependencies = dependencies;
+            this.validator = response.etag != null ? new PageValidator(response.etag, response.lastModified) : null;
+        }
+
+        /**
+         * Returns the validator that was sent along with the output.
+         *
+         * @return {@code null} if there wasn't one.
+         */
+        public PageValidator getValidator() {
+            return validator;
+        }
+
+        /**
+         * Writes the headers in this entry to the given {@code response}.
+         *
+         * @param response Nonnull.
+         */
+        public void writeHeadersTo(HttpServletResponse response) {
+            if (contentType != null) {
+                response.setContentType(contentType);
+            }
+
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                for (String value : entry.getValue()) {
+                    response.addHeader(entry.getKey(), value);
+                }
+            }
+
+            response.setHeader("Brightspot-Page-Cache", "hit");
+        }
+
+        /**
+         * Writes this entry to the given {@code response}.
+         *
+         * @param response Nonnull.
+         */
+        public void writeTo(HttpServletResponse response) throws IOException {
+            writeHeadersTo(response);
+            response.getWriter().write(output);
+        }
+    }
+
+    /**
+     * Response that captures everything written to it, in addition to
+     * passing it through, so that it can be put into the cache.
+     */
+    public static final class CapturingResponse extends HttpServletResponseWrapper {
+
+        private final StringWriter capture = new StringWriter();
+        private final Map<String, List<String>> headers = new LinkedHashMap<>();
+        private PrintWriter writer;
+        private boolean cacheable = true;
+        private String etag;
+        private long lastModified;
+
+        public CapturingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        /**
+         * Returns {@code true} if the captured output is a successful
+         * response that's safe to share with other users.
+         */
+        public boolean isCacheable() {
+            if (!cacheable || getStatus() != SC_OK) {
+                return false;
+            }
+
+            for (String value : getHeaders("Cache-Control")) {
+                if (value != null && (value.contains("private") || value.contains("no-store"))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private void putHeader(String name, String value, boolean add) {
+            if ("Set-Cookie".equalsIgnoreCase(name)) {
+                cacheable = false;
+                return;
+            }
+
+            if ("ETag".equalsIgnoreCase(name)) {
+                etag = value;
+            }
+
+            List<String> values = add ? headers.get(name) : null;
+
+            if (values == null) {
+                values = new ArrayList<>();
+                headers.put(name, values);
+            }
+
+            values.add(value);
+        }
+
+        private void putDateHeader(String name, long date, boolean add) {
+            if ("Last-Modified".equalsIgnoreCase(name)) {
+                lastModified = date;
+            }
+
+            putHeader(name, DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(date).atZone(ZoneOffset.UTC)), add);
+        }
+
+        @Override
+        public void addCookie(Cookie cookie) {
+            cacheable = false;
+            super.addCookie(cookie);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            putHeader(name, value, false);
+            super.setHeader(name, value);
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            putHeader(name, value, true);
+            super.addHeader(name, value);
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+            putDateHeader(name, date, false);
+            super.setDateHeader(name, date);
+        }
+
+        @Override
+        public void addDateHeader(String name, long date) {
+            putDateHeader(name, date, true);
+            super.addDateHeader(name, date);
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            putHeader(name, String.valueOf(value), false);
+            super.setIntHeader(name, value);
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            putHeader(name, String.valueOf(value), true);
+            super.addIntHeader(name, value);
+        }
+
+        @Override
+        public void setContentLength(int length) {
+            putHeader("Content-Length", String.valueOf(length), false);
+            super.setContentLength(length);
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+            putHeader("Content-Length", String.valueOf(length), false);
+            super.setContentLengthLong(length);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            cacheable = false;
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            cacheable = false;
+            super.sendError(status);
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            cacheable = false;
+            super.sendError(status, message);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+
+            // Binary output isn't captured.
+            cacheable = false;
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                Writer delegate = super.getWriter();
+
+                writer = new PrintWriter(new Writer() {
+
+                    @Override
+                    public void write(char[] buffer, int offset, int length) throws IOException {
+                        delegate.write(buffer, offset, length);
+                        capture.write(buffer, offset, length);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        delegate.close();
+                    }
+                });
+            }
+
+            return writer;
+        }
+    }
+}
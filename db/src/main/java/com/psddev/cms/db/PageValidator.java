@@ -0,0 +1,249 @@
+package com.psddev.cms.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.psddev.dari.db.Query;
+import com.psddev.dari.db.State;
+import com.psddev.dari.util.StringUtils;
+
+/**
+ * HTTP validators ({@code ETag} and {@code Last-Modified}) for a page
+ * rendered by {@link PageFilter}, computed from the update dates of the main
+ * object, the page, and all the objects that were read the last time the
+ * same page was rendered (see {@link PageDependencies}).
+ *
+ * <p>Since the validators are known before any view model is created or
+ * any template runs, {@link #isNotModified} can be used to answer
+ * conditional requests without rendering the page.</p>
+ *
+ * <p>Validators are only computed for pages whose last render was fully
+ * tracked and not personalized. They also change at least once per the
+ * given duration, since a query (for example, the latest articles) can
+ * return new objects without any of the old ones changing.</p>
+ */
+final class PageValidator {
+
+    private static final List<UUID> UNTRACKED = Collections.emptyList();
+
+    private static final Cache<String, List<UUID>> RENDERED_IDS = CacheBuilder
+            .newBuilder()
+            .maximumSize(10000)
+            .build();
+
+    private final String etag;
+    private final long lastModified;
+
+    PageValidator(String etag, long lastModified) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Creates the key that identifies the page for the given
+     * {@code request}.
+     *
+     * @param request Nonnull.
+     * @param site Nullable.
+     * @return Nonnull.
+     */
+    public static String createKey(HttpServletRequest request, Site site) {
+        Profile profile = PageFilter.Static.getProfile(request);
+        String queryString = request.getQueryString();
+
+        return (site != null ? site.getId() : "")
+                + " " + PageFilter.Static.getPath(request)
+                + " " + (queryString != null ? queryString : "")
+                + " " + PageFilter.Static.getViewType(request)
+                + " " + (profile != null ? profile.getDeviceClass() : "");
+    }
+
+    /**
+     * Computes the validator for the page identified by the given
+     * {@code key}.
+     *
+     * @param key Nonnull.
+     * @param version Nullable. Extra value mixed into the {@code ETag}, for
+     * example to invalidate all validators after a template change.
+     * @param duration Maximum time in milliseconds that a validator stays
+     * the same.
+     * @param mainObject Nonnull.
+     * @param page Nullable.
+     * @return {@code null} if the page hasn't been rendered yet, its last
+     * render wasn't fully tracked, or any of the dependencies doesn't have
+     * an update date, since its changes couldn't be detected.
+     */
+    public static PageValidator compute(String key, String version, long duration, Object mainObject, Page page) {
+        List<UUID> renderedIds = RENDERED_IDS.getIfPresent(key);
+
+        if (renderedIds == null || renderedIds == UNTRACKED || duration <= 0L) {
+            return null;
+        }
+
+        Map<UUID, Object> dependencies = new HashMap<>();
+
+        dependencies.put(State.getInstance(mainObject).getId(), mainObject);
+
+        if (page != null) {
+            dependencies.put(page.getId(), page);
+        }
+
+        Set<UUID> missingIds = new LinkedHashSet<>();
+
+        for (UUID id : renderedIds) {
+            if (!dependencies.containsKey(id)) {
+                missingIds.add(id);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            for (Object object : Query
+                    .fromAll()
+                    .where("_id = ?", missingIds)
+                    .selectAll()) {
+
+                UUID id = State.getInstance(object).getId();
+
+                dependencies.put(id, object);
+                missingIds.remove(id);
+            }
+        }
+
+        List<String> parts = new ArrayList<>();
+        long lastModified = 0L;
+
+        for (Map.Entry<UUID, Object> entry : dependencies.entrySet()) {
+            Date updateDate = State.getInstance(entry.getValue()).as(Content.ObjectModification.class).getUpdateDate();
+
+            if (updateDate == null) {
+                return null;
+            }
+
+            long time = updateDate.getTime();
+
+            parts.add(entry.getKey() + ":" + time);
+            lastModified = Math.max(lastModified, time);
+        }
+
+        // Deleted since the last render.
+        for (UUID id : missingIds) {
+            parts.add(id + ":");
+        }
+
+        Collections.sort(parts);
+
+        // Bounds how long a page can be considered unchanged.
+        long bucketStart = System.currentTimeMillis() / duration * duration;
+
+        lastModified = Math.max(lastModified, bucketStart);
+
+        parts.add(key);
+        parts.add(String.valueOf(bucketStart));
+
+        if (version != null) {
+            parts.add(version);
+        }
+
+        return new PageValidator(
+                "\"" + StringUtils.hex(StringUtils.md5(StringUtils.join(parts, ","))) + "\"",
+                lastModified);
+    }
+
+    /**
+     * Remembers the given {@code dependencies} of the page identified by the
+     * given {@code key} for the next {@link #compute}.
+     *
+     * @param key Nonnull.
+     * @param dependencies Nonnull.
+     */
+    public static void remember(String key, PageDependencies dependencies) {
+        RENDERED_IDS.put(key, dependencies.isTracked() && !dependencies.isPersonalized()
+                ? new ArrayList<>(dependencies.getIds())
+                : UNTRACKED);
+    }
+
+    /**
+     * Returns the strong {@code ETag}, including the quotes.
+     *
+     * @return Nonnull.
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Returns the {@code Last-Modified} time in milliseconds.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Sets the {@code ETag} and {@code Last-Modified} headers on the given
+     * {@code response}.
+     *
+     * @param response Nonnull.
+     */
+    public void writeHeaders(HttpServletResponse response) {
+        response.setHeader("ETag", etag);
+
+        if (lastModified > 0L) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the given conditional {@code request} can be
+     * answered with {@code 304 Not Modified}.
+     *
+     * @param request Nonnull.
+     */
+    public boolean isNotModified(HttpServletRequest request) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+
+        // If-Modified-Since is ignored when If-None-Match is present.
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        if (lastModified > 0L) {
+            long ifModifiedSince;
+
+            try {
+                ifModifiedSince = request.getDateHeader("If-Modified-Since");
+
+            } catch (IllegalArgumentException error) {
+                return false;
+            }
+
+            // HTTP dates only have the precision of a second.
+            return ifModifiedSince > -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+        }
+
+        return false;
+    }
+}
@@ -69,6 +69,30 @@ public class Profile extends Record {
         this.deviceWidth = deviceWidth;
     }
 
+    /**
+     * Returns the coarse class of the device based on its width, for use
+     * in cache keys where the exact user agent would make every visitor
+     * unique.
+     *
+     * @return Nonnull.
+     */
+    String getDeviceClass() {
+        Integer width = getDeviceWidth();
+
+        if (width == null) {
+            return "";
+
+        } else if (width < 768) {
+            return "small";
+
+        } else if (width < 1024) {
+            return "medium";
+
+        } else {
+            return "large";
+        }
+    }
+
     /**
      * Returns {@code true} if the user agent string includes the given
      * regular expression {@code pattern}.
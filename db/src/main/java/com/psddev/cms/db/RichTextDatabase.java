@@ -2,39 +2,29 @@ package com.psddev.cms.db;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.psddev.dari.db.ForwardingDatabase;
 import com.psddev.dari.db.ObjectField;
 import com.psddev.dari.db.ObjectType;
 import com.psddev.dari.db.Query;
-import com.psddev.dari.db.ReferentialText;
 import com.psddev.dari.db.State;
 import com.psddev.dari.util.PaginatedResult;
 
+/**
+ * Replaces the rich text field values in all objects that are read with
+ * their publishable forms.
+ *
+ * <p>The publishable forms are kept in {@link RichTextPublishableCache}.</p>
+ */
 public class RichTextDatabase extends ForwardingDatabase {
 
-    private static final LoadingCache<String, String> PUBLISHABLES = CacheBuilder
-            .newBuilder()
-            .maximumSize(10000)
-            .build(new CacheLoader<String, String>() {
-
-                @Override
-                public String load(String value) {
-                    List<Object> publishables = new ReferentialText(value, true).toPublishables(true, new RichTextCleaner());
-
-                    return publishables.isEmpty() ? "" : (String) publishables.get(0);
-                }
-            });
-
-    private final Set<UUID> cleaned = new HashSet<UUID>();
+    // Concurrent, since the view getters may be resolved in parallel.
+    private final Set<UUID> cleaned = ConcurrentHashMap.newKeySet();
 
     // --- ForwardingDatabase support ---
 
@@ -58,14 +48,7 @@ public class RichTextDatabase extends ForwardingDatabase {
                     Object value = state.get(fieldName);
 
                     if (value instanceof String) {
-                        try {
-                            state.put(fieldName, PUBLISHABLES.getUnchecked((String) value));
-
-                        } catch (IllegalStateException error) {
-                            List<Object> publishables = new ReferentialText((String) value, true).toPublishables(true, new RichTextCleaner());
-
-                            state.put(fieldName, publishables.isEmpty() ? "" : (String) publishables.get(0));
-                        }
+                        state.put(fieldName, RichTextPublishableCache.getInstance().find(state.getId(), fieldName, (String) value));
                     }
                 }
             }
@@ -0,0 +1,152 @@
+package com.psddev.cms.db;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.jsoup.nodes.Element;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.psddev.dari.db.Database;
+import com.psddev.dari.db.ReferentialText;
+import com.psddev.dari.db.State;
+import com.psddev.dari.db.UpdateNotifier;
+import com.psddev.dari.util.ObjectUtils;
+import com.psddev.dari.util.Settings;
+import com.psddev.dari.util.StringUtils;
+
+/**
+ * Bounded cache of the publishable forms of the rich text field values,
+ * used by {@link RichTextDatabase} so that the rich text isn't parsed on
+ * every read.
+ *
+ * <p>The forms are keyed by the object ID, the field name and the hash of
+ * the rich text, so that only the forms themselves are kept in memory and
+ * a stale form is never used after the value changes. The links rewritten
+ * by {@link RichTextCleaner} depend on the permalinks of the linked
+ * objects, so while the cache is {@linkplain #register registered} as an
+ * update notifier on a database, the forms that link to an object are
+ * removed whenever that object is saved.</p>
+ */
+final class RichTextPublishableCache implements UpdateNotifier<Object> {
+
+    private static final RichTextPublishableCache INSTANCE = new RichTextPublishableCache();
+
+    private final Cache<String, Publishable> publishables = CacheBuilder
+            .newBuilder()
+            .maximumSize(Settings.getOrDefault(long.class, "brightspot/richTextPublishableCacheMaximumSize", 10000L))
+            .build();
+
+    private volatile Database database;
+
+    private RichTextPublishableCache() {
+    }
+
+    /**
+     * Returns the singleton instance.
+     *
+     * @return Nonnull.
+     */
+    public static RichTextPublishableCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts listening to the updates in the given {@code database}, so
+     * that the forms are removed when the objects that they link to change.
+     *
+     * @param database Nonnull.
+     */
+    public synchronized void register(Database database) {
+        unregister();
+        database.addUpdateNotifier(this);
+        this.database = database;
+    }
+
+    /**
+     * Stops listening to the updates.
+     */
+    public synchronized void unregister() {
+        if (database != null) {
+            database.removeUpdateNotifier(this);
+            database = null;
+        }
+
+        publishables.invalidateAll();
+    }
+
+    /**
+     * Returns the publishable form of the given rich text {@code value} in
+     * the field with the given {@code fieldName} of the object with the
+     * given {@code id}.
+     *
+     * @param id Nonnull.
+     * @param fieldName Nonnull.
+     * @param value Nonnull.
+     * @return Nonnull.
+     */
+    public String find(UUID id, String fieldName, String value) {
+        String key = id + "/" + fieldName + "/" + StringUtils.hex(StringUtils.md5(value));
+        Publishable publishable = publishables.getIfPresent(key);
+
+        if (publishable == null) {
+            publishable = publish(value);
+            publishables.put(key, publishable);
+        }
+
+        return publishable.publishable;
+    }
+
+    private static Publishable publish(String value) {
+        LinkCollectingCleaner cleaner = new LinkCollectingCleaner();
+        List<Object> publishables = new ReferentialText(value, true).toPublishables(true, cleaner);
+
+        return new Publishable(
+                publishables.isEmpty() ? "" : (String) publishables.get(0),
+                cleaner.linkedIds.isEmpty() ? Collections.<UUID>emptySet() : cleaner.linkedIds);
+    }
+
+    // --- UpdateNotifier support ---
+
+    @Override
+    public void onUpdate(Object object) {
+        UUID id = State.getInstance(object).getId();
+
+        publishables.asMap().values().removeIf(publishable -> publishable.linkedIds.contains(id));
+    }
+
+    // Publishable form, along with the IDs of the objects that it links to.
+    private static final class Publishable {
+
+        public final String publishable;
+        public final Set<UUID> linkedIds;
+
+        public Publishable(String publishable, Set<UUID> linkedIds) {
+            this.publishable = publishable;
+            this.linkedIds = linkedIds;
+        }
+    }
+
+    // Remembers the objects linked from the rich text before their links
+    // are rewritten.
+    private static final class LinkCollectingCleaner extends RichTextCleaner {
+
+        public final Set<UUID> linkedIds = new HashSet<>();
+
+        @Override
+        public void after(Element body) {
+            for (Element a : body.getElementsByTag("a")) {
+                UUID id = ObjectUtils.to(UUID.class, a.attr("data-cms-id"));
+
+                if (id != null) {
+                    linkedIds.add(id);
+                }
+            }
+
+            super.after(body);
+        }
+    }
+}
@@ -11,4 +11,13 @@ public abstract class Rule extends Record {
 
     public abstract boolean evaluate(
             Variation variation, Profile profile, Object object);
+
+    /**
+     * Returns {@code true} if the result of {@link #evaluate} depends on
+     * the object or anything else besides the variation and the profile.
+     * If not, the result is reused for all objects within a request.
+     */
+    public boolean isObjectDependent() {
+        return true;
+    }
 }
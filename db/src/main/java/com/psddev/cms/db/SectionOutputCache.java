@@ -0,0 +1,271 @@
+package com.psddev.cms.db;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.psddev.dari.util.ObjectUtils;
+import com.psddev.dari.util.Settings;
+
+/**
+ * Bounded cache of the output of {@linkplain Section#getCacheDuration
+ * cacheable sections}, used by {@link PageFilter#renderSection}.
+ *
+ * <p>The output is keyed by the section, the site, the view type, the
+ * {@linkplain Profile#getDeviceClass device class} and whether the request
+ * is a preview, so that variants aren't shared across them. When the output
+ * isn't cached, only the first request renders it while all concurrent
+ * requests for the same key wait for the result. When the output expires,
+ * the first request to notice re-renders it while all concurrent requests
+ * keep being served the stale output, instead of every request re-rendering
+ * or waiting.</p>
+ */
+public final class SectionOutputCache {
+
+    private static final SectionOutputCache INSTANCE = new SectionOutputCache();
+
+    private final Cache<Key, Output> outputs = CacheBuilder
+            .newBuilder()
+            .maximumSize(Settings.getOrDefault(long.class, "brightspot/sectionCacheMaximumSize", 10000L))
+            .build();
+
+    private final ConcurrentMap<Key, CompletableFuture<String>> productions = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong staleHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+
+    private SectionOutputCache() {
+    }
+
+    /**
+     * Returns the singleton instance.
+     *
+     * @return Nonnull.
+     */
+    public static SectionOutputCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the number of times fresh output was served.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of times stale output was served while another
+     * request was refreshing it.
+     */
+    public long getStaleHitCount() {
+        return staleHitCount.get();
+    }
+
+    /**
+     * Returns the number of times the output had to be produced because it
+     * wasn't cached.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of times a request waited for the output that
+     * another request was producing.
+     */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    /**
+     * Returns the number of times expired output was produced again.
+     */
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * Returns the number of cached outputs.
+     */
+    public long getSize() {
+        return outputs.size();
+    }
+
+    /**
+     * Removes all cached outputs.
+     */
+    public void invalidateAll() {
+        outputs.invalidateAll();
+    }
+
+    /**
+     * Returns the output of the given {@code section} for the given
+     * {@code request}, using the given {@code producer} to create it if it's
+     * not cached or expired.
+     *
+     * @param request Nonnull.
+     * @param section Nonnull.
+     * @param producer Nonnull.
+     * @return Nullable.
+     */
+    String get(HttpServletRequest request, Section section, Producer producer) throws IOException, ServletException {
+        Key key = new Key(request, section);
+        Output output = outputs.getIfPresent(key);
+
+        if (output == null) {
+            return produceOnce(key, producer);
+
+        } else if (System.currentTimeMillis() - output.produced <= section.getCacheDuration()) {
+            hitCount.incrementAndGet();
+            return output.body;
+
+        } else if (output.refreshing.compareAndSet(false, true)) {
+            refreshCount.incrementAndGet();
+
+            try {
+                return produce(key, producer);
+
+            } finally {
+                output.refreshing.set(false);
+            }
+
+        } else {
+            staleHitCount.incrementAndGet();
+            return output.body;
+        }
+    }
+
+    // Makes concurrent misses for the same key share a single production.
+    private String produceOnce(Key key, Producer producer) throws IOException, ServletException {
+        CompletableFuture<String> production = new CompletableFuture<>();
+        CompletableFuture<String> existing = productions.putIfAbsent(key, production);
+
+        if (existing != null) {
+            waitCount.incrementAndGet();
+
+            try {
+                return existing.get();
+
+            } catch (ExecutionException error) {
+
+                // The other request failed, so try again without waiting.
+                return producer.produce();
+
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        try {
+
+            // Produced while the previous production was being removed.
+            Output output = outputs.getIfPresent(key);
+
+            if (output != null) {
+                hitCount.incrementAndGet();
+                production.complete(output.body);
+                return output.body;
+            }
+
+            missCount.incrementAndGet();
+
+            String body = produce(key, producer);
+
+            production.complete(body);
+            return body;
+
+        } catch (IOException | ServletException | RuntimeException | Error error) {
+            production.completeExceptionally(error);
+            throw error;
+
+        } finally {
+            productions.remove(key, production);
+        }
+    }
+
+    private String produce(Key key, Producer producer) throws IOException, ServletException {
+        String body = producer.produce();
+
+        outputs.put(key, new Output(body));
+        return body;
+    }
+
+    /**
+     * Produces the section output.
+     */
+    @FunctionalInterface
+    interface Producer {
+
+        String produce() throws IOException, ServletException;
+    }
+
+    private static final class Output {
+
+        public final String body;
+        public final long produced = System.currentTimeMillis();
+        public final AtomicBoolean refreshing = new AtomicBoolean();
+
+        public Output(String body) {
+            this.body = body;
+        }
+    }
+
+    private static final class Key {
+
+        private final UUID sectionId;
+        private final UUID siteId;
+        private final String viewType;
+        private final String deviceClass;
+        private final boolean preview;
+
+        public Key(HttpServletRequest request, Section section) {
+            Site site = PageFilter.Static.getSite(request);
+            Profile profile = PageFilter.Static.getProfile(request);
+
+            this.sectionId = section.getId();
+            this.siteId = site != null ? site.getId() : null;
+            this.viewType = PageFilter.Static.getViewType(request);
+            this.deviceClass = profile != null ? profile.getDeviceClass() : "";
+            this.preview = PageFilter.Static.isPreview(request);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+
+            } else if (other instanceof Key) {
+                Key otherKey = (Key) other;
+
+                return sectionId.equals(otherKey.sectionId)
+                        && ObjectUtils.equals(siteId, otherKey.siteId)
+                        && ObjectUtils.equals(viewType, otherKey.viewType)
+                        && deviceClass.equals(otherKey.deviceClass)
+                        && preview == otherKey.preview;
+
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return ObjectUtils.hashCode(sectionId, siteId, viewType, deviceClass, preview);
+        }
+    }
+}
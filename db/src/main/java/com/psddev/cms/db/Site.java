@@ -272,9 +272,24 @@ public class Site extends Record {
             }
         };
 
+        private static volatile SiteUrlMatcher urlMatcher;
+
         private Static() {
         }
 
+        // Recompiles the URL matcher whenever INSTANCES produces a new list.
+        private static SiteUrlMatcher getUrlMatcher() {
+            List<Site> sites = INSTANCES.get().get();
+            SiteUrlMatcher matcher = urlMatcher;
+
+            if (matcher == null || matcher.getSites() != sites) {
+                matcher = SiteUrlMatcher.compile(sites);
+                urlMatcher = matcher;
+            }
+
+            return matcher;
+        }
+
         /** Returns a cached list of all sites. */
         public static List<Site> findAll() {
             return new ArrayList<Site>(INSTANCES.get().get());
@@ -286,6 +301,12 @@ public class Site extends Record {
                 return null;
             }
 
+            SiteUrlMatcher matcher = getUrlMatcher();
+
+            if (matcher.supports(url)) {
+                return matcher.match(url);
+            }
+
             URI requestUri;
             try {
                 requestUri = new URI(url);
@@ -301,7 +322,7 @@ public class Site extends Record {
             }
 
             Map<String, Site> checkUrlsMap = new HashMap<String, Site>();
-            for (Site site : INSTANCES.get().get()) {
+            for (Site site : matcher.getSites()) {
                 for (String siteUrl : site.getUrls()) {
                     try {
                         String checkUrl = requestUri.resolve(siteUrl).toString();
@@ -0,0 +1,309 @@
+package com.psddev.cms.db;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Precompiled form of all site URLs, used by {@link Site.Static#findByUrl}
+ * to find the site associated with a request URL without parsing it or
+ * scanning every site URL.
+ *
+ * <p>Site URLs are grouped by their scheme and authority (for example,
+ * {@code http://www.example.com}) into a hash table, and each group holds
+ * its path prefixes ordered longest first, so that matching a request URL
+ * only hashes its scheme and authority and then compares a few prefixes.
+ * Host-relative site URLs (for example, {@code /site}) are merged into every
+ * group, and also kept separately for request URLs with an unknown
+ * authority.</p>
+ */
+final class SiteUrlMatcher {
+
+    private static final String[] SCHEMES = { "http", "https" };
+
+    private static final Comparator<Prefix> LONGEST_PATH_FIRST = new Comparator<Prefix>() {
+        @Override
+        public int compare(Prefix x, Prefix y) {
+            return Integer.compare(y.path.length(), x.path.length());
+        }
+    };
+
+    private final List<Site> sites;
+    private final boolean supported;
+    private final Authority[] authorities;
+    private final Prefix[] relativePrefixes;
+
+    private SiteUrlMatcher(List<Site> sites, boolean supported, Authority[] authorities, Prefix[] relativePrefixes) {
+        this.sites = sites;
+        this.supported = supported;
+        this.authorities = authorities;
+        this.relativePrefixes = relativePrefixes;
+    }
+
+    /**
+     * Compiles the URLs of the given {@code sites}.
+     *
+     * @param sites Nonnull.
+     * @return Nonnull.
+     */
+    public static SiteUrlMatcher compile(List<Site> sites) {
+        Set<String> authorityNames = new LinkedHashSet<>();
+        boolean supported = true;
+
+        // First pass to find all authorities, so that host-relative URLs can
+        // be merged into each one.
+        for (Site site : sites) {
+            for (String siteUrl : site.getUrls()) {
+                URI uri = parse(siteUrl);
+
+                if (uri == null) {
+                    continue;
+
+                } else if (uri.isAbsolute()) {
+                    String key = ensureSlash(siteUrl);
+                    int authorityEnd = findAuthorityEnd(key);
+
+                    if (authorityEnd > -1) {
+                        authorityNames.add(key.substring(0, authorityEnd));
+                    }
+
+                } else if (uri.getRawAuthority() != null) {
+                    for (String scheme : SCHEMES) {
+                        String key = ensureSlash(scheme + ":" + siteUrl);
+                        int authorityEnd = findAuthorityEnd(key);
+
+                        if (authorityEnd > -1) {
+                            authorityNames.add(key.substring(0, authorityEnd));
+                        }
+                    }
+
+                } else if (!siteUrl.startsWith("/")) {
+
+                    // Relative to the request path, which can't be
+                    // precompiled.
+                    supported = false;
+                }
+            }
+        }
+
+        Map<String, Map<String, Site>> sitesByAuthority = new LinkedHashMap<>();
+        Map<String, Site> relativeSites = new LinkedHashMap<>();
+
+        for (String authorityName : authorityNames) {
+            sitesByAuthority.put(authorityName, new LinkedHashMap<>());
+        }
+
+        // Second pass in the original order so that the later sites win
+        // on duplicate URLs.
+        for (Site site : sites) {
+            for (String siteUrl : site.getUrls()) {
+                URI uri = parse(siteUrl);
+
+                if (uri == null) {
+                    continue;
+
+                } else if (uri.isAbsolute()) {
+                    put(sitesByAuthority, ensureSlash(siteUrl), site);
+
+                } else if (uri.getRawAuthority() != null) {
+                    for (String scheme : SCHEMES) {
+                        put(sitesByAuthority, ensureSlash(scheme + ":" + siteUrl), site);
+                    }
+
+                } else if (siteUrl.startsWith("/")) {
+                    String path = ensureSlash(uri.getRawPath());
+
+                    relativeSites.put(path, site);
+
+                    for (Map.Entry<String, Map<String, Site>> entry : sitesByAuthority.entrySet()) {
+                        entry.getValue().put(entry.getKey() + path, site);
+                    }
+                }
+            }
+        }
+
+        int size = 1;
+
+        while (size < sitesByAuthority.size() * 2) {
+            size <<= 1;
+        }
+
+        Authority[] authorities = new Authority[size];
+
+        for (Map.Entry<String, Map<String, Site>> entry : sitesByAuthority.entrySet()) {
+            String name = entry.getKey();
+            int index = hash(name, 0, name.length()) & (size - 1);
+
+            while (authorities[index] != null) {
+                index = (index + 1) & (size - 1);
+            }
+
+            authorities[index] = new Authority(name, toPrefixes(name.length(), entry.getValue()));
+        }
+
+        return new SiteUrlMatcher(sites, supported, authorities, toPrefixes(0, relativeSites));
+    }
+
+    private static URI parse(String siteUrl) {
+        try {
+            return siteUrl != null ? new URI(siteUrl) : null;
+
+        } catch (URISyntaxException error) {
+            // The URL is malformed, so just skip it.
+            return null;
+        }
+    }
+
+    private static String ensureSlash(String url) {
+        return url.endsWith("/") ? url : url + "/";
+    }
+
+    // Returns the index of the slash after the scheme and the authority.
+    private static int findAuthorityEnd(String url) {
+        int schemeEnd = url.indexOf("://");
+
+        return schemeEnd > -1 ? url.indexOf('/', schemeEnd + 3) : -1;
+    }
+
+    private static void put(Map<String, Map<String, Site>> sitesByAuthority, String key, Site site) {
+        int authorityEnd = findAuthorityEnd(key);
+
+        if (authorityEnd > -1) {
+            sitesByAuthority.get(key.substring(0, authorityEnd)).put(key, site);
+        }
+    }
+
+    private static Prefix[] toPrefixes(int authorityLength, Map<String, Site> sites) {
+        List<Prefix> prefixes = new ArrayList<>();
+
+        for (Map.Entry<String, Site> entry : sites.entrySet()) {
+            String key = entry.getKey();
+
+            prefixes.add(new Prefix(key.substring(authorityLength), key, entry.getValue()));
+        }
+
+        prefixes.sort(LONGEST_PATH_FIRST);
+        return prefixes.toArray(new Prefix[prefixes.size()]);
+    }
+
+    // Same as String#hashCode, but over a region.
+    private static int hash(String string, int start, int end) {
+        int hash = 0;
+
+        for (int i = start; i < end; ++ i) {
+            hash = 31 * hash + string.charAt(i);
+        }
+
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the list of sites that this matcher was compiled from.
+     *
+     * @return Nonnull.
+     */
+    public List<Site> getSites() {
+        return sites;
+    }
+
+    /**
+     * Returns {@code true} if this matcher can be used to match the given
+     * {@code url}. If not, the caller should fall back to resolving each
+     * site URL against it.
+     *
+     * @param url Nonnull.
+     */
+    public boolean supports(String url) {
+        return supported
+                && (url.startsWith("http://") || url.startsWith("https://"));
+    }
+
+    /**
+     * Finds the site associated with the given {@code url}.
+     *
+     * @param url Nonnull. Must be {@linkplain #supports supported}.
+     * @return {@code null} if there isn't a match. Otherwise, an entry with
+     * the matching site URL, always ending with a slash, as the key, and the
+     * site as the value.
+     */
+    public Map.Entry<String, Site> match(String url) {
+        int authorityEnd = url.indexOf('/', url.indexOf("://") + 3);
+
+        if (authorityEnd < 0) {
+            authorityEnd = url.length();
+        }
+
+        int mask = authorities.length - 1;
+        int index = hash(url, 0, authorityEnd) & mask;
+
+        for (Authority authority; (authority = authorities[index]) != null; index = (index + 1) & mask) {
+            String name = authority.name;
+
+            if (name.length() == authorityEnd && url.regionMatches(0, name, 0, authorityEnd)) {
+                for (Prefix prefix : authority.prefixes) {
+                    if (prefix.matches(url, authorityEnd)) {
+                        return prefix;
+                    }
+                }
+
+                return null;
+            }
+        }
+
+        for (Prefix prefix : relativePrefixes) {
+            if (prefix.matches(url, authorityEnd)) {
+                return new AbstractMap.SimpleImmutableEntry<>(url.substring(0, authorityEnd) + prefix.path, prefix.site);
+            }
+        }
+
+        return null;
+    }
+
+    private static final class Authority {
+
+        public final String name;
+        public final Prefix[] prefixes;
+
+        public Authority(String name, Prefix[] prefixes) {
+            this.name = name;
+            this.prefixes = prefixes;
+        }
+    }
+
+    private static final class Prefix extends AbstractMap.SimpleImmutableEntry<String, Site> {
+
+        private static final long serialVersionUID = 1L;
+
+        public final String path;
+        public final Site site;
+
+        public Prefix(String path, String key, Site site) {
+            super(key, site);
+
+            this.path = path;
+            this.site = site;
+        }
+
+        // Checks the path against the URL starting at the given offset,
+        // as if the URL always ended with a slash.
+        public boolean matches(String url, int offset) {
+            int urlLength = url.length() - offset;
+            int pathLength = path.length();
+
+            if (urlLength >= pathLength) {
+                return url.startsWith(path, offset);
+
+            } else {
+                return urlLength == pathLength - 1
+                        && url.regionMatches(offset, path, 0, urlLength);
+            }
+        }
+    }
+}
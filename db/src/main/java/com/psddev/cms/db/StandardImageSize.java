@@ -7,7 +7,9 @@ import com.psddev.dari.util.PullThroughValue;
 
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,26 +21,26 @@ public class StandardImageSize extends Record {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StandardImageSize.class);
 
-    private static final PullThroughValue<PeriodicValue<List<StandardImageSize>>>
-            ALL = new PullThroughValue<PeriodicValue<List<StandardImageSize>>>() {
+    private static final PullThroughValue<PeriodicValue<Sizes>>
+            ALL = new PullThroughValue<PeriodicValue<Sizes>>() {
 
         @Override
-        protected PeriodicValue<List<StandardImageSize>> produce() {
-            return new PeriodicValue<List<StandardImageSize>>() {
+        protected PeriodicValue<Sizes> produce() {
+            return new PeriodicValue<Sizes>() {
 
                 @Override
-                protected List<StandardImageSize> update() {
+                protected Sizes update() {
 
                     Query<StandardImageSize> query = Query.from(StandardImageSize.class).sortAscending("displayName");
                     Date cacheUpdate = getUpdateDate();
                     Date databaseUpdate = query.lastUpdate();
                     if (databaseUpdate == null || (cacheUpdate != null && !databaseUpdate.after(cacheUpdate))) {
-                        List<StandardImageSize> sizes = get();
-                        return sizes != null ? sizes : Collections.<StandardImageSize>emptyList();
+                        Sizes sizes = get();
+                        return sizes != null ? sizes : new Sizes(Collections.<StandardImageSize>emptyList());
                     }
 
                     LOGGER.info("Loading image sizes");
-                    return query.selectAll();
+                    return new Sizes(query.selectAll());
                 }
             };
         }
@@ -63,7 +65,22 @@ public class StandardImageSize extends Record {
 
     /** Returns a list of all the image sizes. */
     public static List<StandardImageSize> findAll() {
-        return ALL.get().get();
+        Sizes sizes = ALL.get().get();
+
+        return sizes != null ? sizes.all : null;
+    }
+
+    /**
+     * Returns the image size with the given {@code internalName}, using an
+     * index that's rebuilt along with the list returned by {@link #findAll}.
+     *
+     * @param internalName May be {@code null}.
+     * @return May be {@code null}.
+     */
+    public static StandardImageSize findByInternalName(String internalName) {
+        Sizes sizes = ALL.get().get();
+
+        return sizes != null ? sizes.find(internalName) : null;
     }
 
     public String getDisplayName() {
@@ -121,4 +138,30 @@ public class StandardImageSize extends Record {
     public void setResizeOption(ResizeOption resizeOption) {
         this.resizeOption = resizeOption;
     }
+
+    // All image sizes, along with an index by internal name.
+    static final class Sizes {
+
+        public final List<StandardImageSize> all;
+        public final Map<String, StandardImageSize> byInternalName;
+
+        public Sizes(List<StandardImageSize> all) {
+            Map<String, StandardImageSize> byInternalName = new HashMap<>();
+
+            for (StandardImageSize size : all) {
+                String internalName = size.getInternalName();
+
+                if (internalName != null) {
+                    byInternalName.putIfAbsent(internalName, size);
+                }
+            }
+
+            this.all = all;
+            this.byInternalName = Collections.unmodifiableMap(byInternalName);
+        }
+
+        public StandardImageSize find(String internalName) {
+            return internalName != null ? byInternalName.get(internalName) : null;
+        }
+    }
 }
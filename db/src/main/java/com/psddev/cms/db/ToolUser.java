@@ -26,6 +26,7 @@ import javax.servlet.http.HttpServletRequest;
 
 import com.google.common.io.BaseEncoding;
 import com.psddev.cms.tool.CmsTool;
+import com.psddev.cms.tool.CmsToolSnapshot;
 import com.psddev.cms.tool.Dashboard;
 import com.psddev.cms.tool.DashboardContainer;
 import com.psddev.cms.tool.SearchResultSelection;
@@ -614,7 +615,7 @@ public class ToolUser extends Record implements ToolEntity {
      * @return The tool user that holds the lock. Never {@code null}.
      */
     public ToolUser lockContent(UUID id) {
-        if (Query.from(CmsTool.class).first().isDisableContentLocking()) {
+        if (CmsToolSnapshot.get().isDisableContentLocking()) {
             return this;
         }
 
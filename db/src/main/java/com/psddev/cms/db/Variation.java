@@ -174,6 +174,16 @@ public class Variation extends Record {
             }
         };
 
+        /**
+         * Returns {@code true} if there are any variations that could be
+         * applied.
+         */
+        static boolean hasVariations() {
+            List<Variation> variations = ALL.get().get();
+
+            return variations != null && !variations.isEmpty();
+        }
+
         /**
          * Applies all variations to the given {@code object} using the
          * given {@code profile}.
@@ -205,6 +215,67 @@ public class Variation extends Record {
             }
         }
 
+        /**
+         * Applies all variations to the given {@code object} using the
+         * given {@code profile}, reusing the rule results in the given
+         * {@code memo} where possible.
+         */
+        static void applyAll(Object object, Profile profile, VariationMemo memo) {
+            ErrorUtils.errorIfNull(object, "object");
+            ErrorUtils.errorIfNull(profile, "profile");
+
+            List<Variation> applied = getApplied(object);
+            String key = memo.createKey(object);
+            List<Variation> matched = memo.getMatched(key);
+
+            // Same object read again, so only the operations need to run.
+            if (matched != null) {
+                for (Variation variation : matched) {
+                    if (!applied.contains(variation)) {
+                        applied.add(variation);
+                        applyOperation(variation, profile, object);
+                    }
+                }
+
+                return;
+            }
+
+            matched = new ArrayList<Variation>();
+
+            for (Variation variation : ALL.get().get()) {
+                try {
+                    if (!applied.contains(variation) &&
+                            memo.evaluate(variation, profile, object)) {
+                        applied.add(variation);
+                        matched.add(variation);
+                        variation.getOperation().evaluate(variation, profile, object);
+                    }
+
+                } catch (Throwable error) {
+                    LOGGER.warn(String.format(
+                            "Can't apply variation [%s] to [%s]!",
+                            variation.getId(),
+                            State.getInstance(object).getId()),
+                            error);
+                }
+            }
+
+            memo.putMatched(key, matched);
+        }
+
+        private static void applyOperation(Variation variation, Profile profile, Object object) {
+            try {
+                variation.getOperation().evaluate(variation, profile, object);
+
+            } catch (Throwable error) {
+                LOGGER.warn(String.format(
+                        "Can't apply variation [%s] to [%s]!",
+                        variation.getId(),
+                        State.getInstance(object).getId()),
+                        error);
+            }
+        }
+
         /**
          * Returns the list of variations that have been applied to
          * the given {@code object} so far.
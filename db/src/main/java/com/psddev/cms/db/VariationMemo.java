@@ -0,0 +1,73 @@
+package com.psddev.cms.db;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.psddev.dari.db.State;
+
+/**
+ * Results of applying the variations within a single request, used by
+ * {@link VaryingDatabase} so that the same object read multiple times, and
+ * the rules that don't depend on the object, are only evaluated once.
+ *
+ * @deprecated No replacement.
+ */
+@Deprecated
+final class VariationMemo {
+
+    private final ConcurrentMap<UUID, Boolean> ruleResults = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, List<Variation>> matchedByObject = new ConcurrentHashMap<>();
+
+    /**
+     * Evaluates the rule in the given {@code variation}, reusing the
+     * previous result if it doesn't depend on the object.
+     */
+    public boolean evaluate(Variation variation, Profile profile, Object object) {
+        Rule rule = variation.getRule();
+
+        if (rule.isObjectDependent()) {
+            return rule.evaluate(variation, profile, object);
+        }
+
+        Boolean result = ruleResults.get(variation.getId());
+
+        if (result == null) {
+            result = rule.evaluate(variation, profile, object);
+            ruleResults.put(variation.getId(), result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates the key that identifies the given {@code object} at its
+     * current revision.
+     */
+    public String createKey(Object object) {
+        State state = State.getInstance(object);
+        Date updateDate = state.as(Content.ObjectModification.class).getUpdateDate();
+
+        return state.getId() + ":" + (updateDate != null ? updateDate.getTime() : "");
+    }
+
+    /**
+     * Returns the variations whose rules matched the object identified by
+     * the given {@code key}.
+     *
+     * @return {@code null} if the object hasn't been varied yet.
+     */
+    public List<Variation> getMatched(String key) {
+        return matchedByObject.get(key);
+    }
+
+    /**
+     * Remembers the variations whose rules matched the object identified
+     * by the given {@code key}.
+     */
+    public void putMatched(String key, List<Variation> matched) {
+        matchedByObject.put(key, matched);
+    }
+}
@@ -9,6 +9,7 @@ import javax.servlet.http.HttpServletRequest;
 
 import com.psddev.cms.tool.AuthenticationFilter;
 import com.psddev.dari.db.ForwardingDatabase;
+import com.psddev.dari.db.Grouping;
 import com.psddev.dari.db.Query;
 import com.psddev.dari.util.PaginatedResult;
 
@@ -22,46 +23,95 @@ import com.psddev.dari.util.PaginatedResult;
 @Deprecated
 public class VaryingDatabase extends ForwardingDatabase {
 
-    private HttpServletRequest request;
-    private Profile profile;
+    private volatile HttpServletRequest request;
+    private volatile boolean anonymous;
+    private volatile PageDependencies dependencies;
+    private volatile Profile profile;
+    private volatile VariationMemo memo = new VariationMemo();
 
     public HttpServletRequest getRequest() {
         return request;
     }
 
+    /**
+     * Sets the request, and reads everything that's needed from it right
+     * away, since the reads may happen in the threads that resolve the view
+     * getters in parallel, which mustn't access the request.
+     */
     public void setRequest(HttpServletRequest request) {
         this.request = request;
+        this.anonymous = request != null && !AuthenticationFilter.Static.isAuthenticated(request);
+        this.dependencies = PageDependencies.get(request);
     }
 
     /** Returns the profile. */
     public Profile getProfile() {
-        HttpServletRequest request = getRequest();
-
-        if (request != null &&
-                !AuthenticationFilter.Static.isAuthenticated(request)) {
-            return profile;
-
-        } else {
-            return null;
-        }
+        return anonymous ? profile : null;
     }
 
     /** Sets the profile. */
     public void setProfile(Profile profile) {
         this.profile = profile;
+        this.memo = new VariationMemo();
+    }
+
+    /**
+     * Records the given {@code item} as a dependency of the page being
+     * rendered, and applies the variations for the given {@code profile}.
+     */
+    private <T> T vary(T item, Profile profile) {
+        if (item != null) {
+            if (dependencies != null) {
+                dependencies.add(item);
+            }
+
+            if (profile != null) {
+                if (dependencies != null && Variation.Static.hasVariations()) {
+                    dependencies.setPersonalized();
+                }
+
+                Variation.Static.applyAll(item, profile, memo);
+            }
+        }
+
+        return item;
     }
 
     // --- ForwardingDatabase support ---
 
+    @Override
+    public long readCount(Query<?> query) {
+        untracked();
+        return super.readCount(query);
+    }
+
+    @Override
+    public <T> List<Grouping<T>> readAllGrouped(Query<T> query, String... fields) {
+        untracked();
+        return super.readAllGrouped(query, fields);
+    }
+
+    @Override
+    public <T> PaginatedResult<Grouping<T>> readPartialGrouped(Query<T> query, long offset, int limit, String... fields) {
+        untracked();
+        return super.readPartialGrouped(query, offset, limit, fields);
+    }
+
+    // Counts and groupings can change without any of the objects that were
+    // read changing.
+    private void untracked() {
+        if (dependencies != null) {
+            dependencies.setUntracked();
+        }
+    }
+
     @Override
     public <T> List<T> readAll(Query<T> query) {
         List<T> all = super.readAll(query);
         Profile profile = getProfile();
 
-        if (profile != null) {
-            for (T item : all) {
-                Variation.Static.applyAll(item, profile);
-            }
+        for (T item : all) {
+            vary(item, profile);
         }
 
         return all;
@@ -69,17 +119,7 @@ public class VaryingDatabase extends ForwardingDatabase {
 
     @Override
     public <T> T readFirst(Query<T> query) {
-        T first = super.readFirst(query);
-
-        if (first != null) {
-            Profile profile = getProfile();
-
-            if (profile != null) {
-                Variation.Static.applyAll(first, getProfile());
-            }
-        }
-
-        return first;
+        return vary(super.readFirst(query), getProfile());
     }
 
     @Override
@@ -123,17 +163,7 @@ public class VaryingDatabase extends ForwardingDatabase {
 
         @Override
         public E next() {
-            E item = delegate.next();
-
-            if (item != null) {
-                Profile profile = getProfile();
-
-                if (profile != null) {
-                    Variation.Static.applyAll(item, profile);
-                }
-            }
-
-            return item;
+            return vary(delegate.next(), getProfile());
         }
 
         @Override
@@ -147,10 +177,8 @@ public class VaryingDatabase extends ForwardingDatabase {
         PaginatedResult<T> result = super.readPartial(query, offset, limit);
         Profile profile = getProfile();
 
-        if (profile != null) {
-            for (T item : result.getItems()) {
-                Variation.Static.applyAll(item, profile);
-            }
+        for (T item : result.getItems()) {
+            vary(item, profile);
         }
 
         return result;
@@ -164,10 +192,8 @@ public class VaryingDatabase extends ForwardingDatabase {
         List<T> list = super.readList(query);
         Profile profile = getProfile();
 
-        if (profile != null) {
-            for (T item : list) {
-                Variation.Static.applyAll(item, profile);
-            }
+        for (T item : list) {
+            vary(item, profile);
         }
 
         return list;
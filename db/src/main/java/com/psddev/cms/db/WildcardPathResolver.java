@@ -0,0 +1,195 @@
+package com.psddev.cms.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.psddev.dari.db.Query;
+import com.psddev.dari.db.State;
+
+/**
+ * Resolves the special wildcard fallback paths for a front-end request
+ * in a single pass. For example, given {@code /path/to/file}, the following
+ * are checked in order:
+ *
+ * <ul>
+ * <li>{@code /path/to/file/*}</li>
+ * <li>{@code /path/to/file/**}</li>
+ * <li>{@code /path/to/*}</li>
+ * <li>{@code /path/to/**}</li>
+ * <li>{@code /path/**}</li>
+ * <li>{@code /**}</li>
+ * </ul>
+ *
+ * <p>All candidate directories are looked up together, and all candidate
+ * raw paths are resolved with one query, instead of walking up the path
+ * one segment at a time.</p>
+ */
+final class WildcardPathResolver {
+
+    private WildcardPathResolver() {
+    }
+
+    /**
+     * Finds the object associated with the most specific wildcard path that
+     * matches the given {@code path} in the given {@code site}.
+     *
+     * @param site Nullable.
+     * @param path Nonnull.
+     * @return {@code null} if there isn't a match.
+     */
+    public static Match resolve(Site site, String path) {
+        List<Candidate> candidates = createCandidates(path);
+        Set<String> directoryPaths = new LinkedHashSet<>();
+
+        for (Candidate candidate : candidates) {
+            directoryPaths.add(candidate.directoryPath);
+        }
+
+        Map<String, UUID> directoryIds = Directory.Static.findDirectoryIds(directoryPaths);
+
+        if (directoryIds.isEmpty()) {
+            return null;
+        }
+
+        String siteRawPath = site != null ? site.getRawPath() : null;
+        Set<String> rawPaths = new LinkedHashSet<>();
+
+        for (Candidate candidate : candidates) {
+            UUID directoryId = directoryIds.get(candidate.directoryPath);
+
+            if (directoryId != null) {
+                candidate.rawPath = directoryId + "/" + candidate.name;
+
+                if (siteRawPath != null) {
+                    rawPaths.add(siteRawPath + candidate.rawPath);
+                }
+
+                rawPaths.add(candidate.rawPath);
+            }
+        }
+
+        Map<String, Object> objectsByRawPath = new HashMap<>();
+
+        for (Object object : Query
+                .fromAll()
+                .where(Directory.PATHS_FIELD + " = ?", rawPaths)
+                .selectAll()) {
+
+            for (String rawPath : State.getInstance(object).as(Directory.ObjectModification.class).getRawPaths()) {
+                if (rawPaths.contains(rawPath)) {
+                    objectsByRawPath.putIfAbsent(rawPath, object);
+                }
+            }
+        }
+
+        for (Candidate candidate : candidates) {
+            if (candidate.rawPath == null) {
+                continue;
+            }
+
+            Object object = null;
+
+            if (siteRawPath != null) {
+                object = objectsByRawPath.get(siteRawPath + candidate.rawPath);
+            }
+
+            if (object == null) {
+                object = objectsByRawPath.get(candidate.rawPath);
+            }
+
+            if (object != null && !(object instanceof Directory)) {
+                return new Match(object, candidate.prefix);
+            }
+        }
+
+        return null;
+    }
+
+    // Creates the candidate wildcard paths in the order of precedence.
+    private static List<Candidate> createCandidates(String path) {
+        List<Candidate> candidates = new ArrayList<>();
+        String checkPath;
+        int endMarker;
+
+        if (path.endsWith("/")) {
+            checkPath = path;
+            endMarker = 0;
+
+        } else {
+            checkPath = path + "/";
+            endMarker = 1;
+        }
+
+        for (int i = 0; ; ++ i) {
+            int slashAt = checkPath.lastIndexOf("/");
+
+            if (slashAt < 0) {
+                break;
+            } else {
+                checkPath = checkPath.substring(0, slashAt);
+            }
+
+            if (i <= endMarker) {
+                candidates.add(new Candidate(checkPath, "*"));
+            }
+
+            candidates.add(new Candidate(checkPath, "**"));
+        }
+
+        return candidates;
+    }
+
+    private static class Candidate {
+
+        public final String prefix;
+        public final String directoryPath;
+        public final String name;
+        public String rawPath;
+
+        public Candidate(String prefix, String wildcard) {
+            String path = Directory.normalizePath(prefix + "/" + wildcard);
+
+            path = path.substring(0, path.length() - 1);
+
+            int slashAt = path.lastIndexOf("/");
+
+            this.prefix = prefix;
+            this.directoryPath = path.substring(0, slashAt + 1);
+            this.name = path.substring(slashAt + 1);
+        }
+    }
+
+    /**
+     * Object found by {@link #resolve} along with the part of the path
+     * that preceded the matching wildcard.
+     */
+    public static final class Match {
+
+        private final Object object;
+        private final String prefix;
+
+        private Match(Object object, String prefix) {
+            this.object = object;
+            this.prefix = prefix;
+        }
+
+        /**
+         * @return Nonnull.
+         */
+        public Object getObject() {
+            return object;
+        }
+
+        /**
+         * @return Nonnull.
+         */
+        public String getPrefix() {
+            return prefix;
+        }
+    }
+}
@@ -3,7 +3,7 @@ package com.psddev.cms.rtc;
 import com.google.common.collect.ImmutableMap;
 import com.psddev.cms.db.ToolUser;
 import com.psddev.cms.tool.AuthenticationFilter;
-import com.psddev.cms.tool.CmsTool;
+import com.psddev.cms.tool.CmsToolSnapshot;
 import com.psddev.dari.db.Database;
 import com.psddev.dari.db.Query;
 import com.psddev.dari.util.AbstractFilter;
@@ -108,9 +108,7 @@ public class RtcFilter extends AbstractFilter implements AbstractFilter.Auto {
         }
 
         // RTC disabled?
-        CmsTool cms = Query.from(CmsTool.class).first();
-
-        if (cms != null && cms.isDisableRtc()) {
+        if (CmsToolSnapshot.get().isDisableRtc()) {
             chain.doFilter(request, response);
             return;
         }
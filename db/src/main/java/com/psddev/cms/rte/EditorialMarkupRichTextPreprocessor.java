@@ -18,4 +18,9 @@ public class EditorialMarkupRichTextPreprocessor implements RichTextPreprocessor
         body.getElementsByClass("rte").remove();
         body.select("code[data-annotations]").remove();
     }
+
+    @Override
+    public String getCacheKey() {
+        return getClass().getName();
+    }
 }
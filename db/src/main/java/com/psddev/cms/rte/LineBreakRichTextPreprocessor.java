@@ -59,6 +59,11 @@ public class LineBreakRichTextPreprocessor implements RichTextPreprocessor {
         this("p");
     }
 
+    @Override
+    public String getCacheKey() {
+        return getClass().getName() + "/" + tag.getName();
+    }
+
     @Override
     public void preprocess(Element body) {
         body.select(".cms-textAlign-left, .cms-textAlign-center, .cms-textAlign-right, ol, ul").forEach(element -> {
@@ -15,4 +15,16 @@ public interface RichTextPreprocessor {
      * @param body Nonnull.
      */
     void preprocess(Element body);
+
+    /**
+     * Returns the key that identifies the transformation performed by this
+     * preprocessor, so that its result can be cached by
+     * {@link RichTextViewBuilder#cache(boolean)}. Preprocessors that return
+     * the same key must transform the same HTML in the same way.
+     *
+     * @return Nullable. If {@code null}, the result isn't cached.
+     */
+    default String getCacheKey() {
+        return null;
+    }
 }
@@ -7,12 +7,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Attribute;
 import org.jsoup.nodes.DataNode;
@@ -25,8 +26,12 @@ import com.psddev.cms.db.RichTextElement;
 import com.psddev.dari.db.ObjectType;
 import com.psddev.dari.db.Reference;
 import com.psddev.dari.db.ReferentialText;
+import com.psddev.dari.util.CodeUtils;
 import com.psddev.dari.util.HtmlWriter;
+import com.psddev.dari.util.Lazy;
 import com.psddev.dari.util.ObjectUtils;
+import com.psddev.dari.util.Settings;
+import com.psddev.dari.util.StringUtils;
 
 /**
  * Builder that can convert HTML into views.
@@ -40,10 +45,35 @@ import com.psddev.dari.util.ObjectUtils;
  */
 public class RichTextViewBuilder<V> {
 
+    private static final Lazy<Map<String, ObjectType>> TAG_TYPES = new Lazy<Map<String, ObjectType>>() {
+
+        @Override
+        protected Map<String, ObjectType> create() {
+            Map<String, ObjectType> tagTypes = new HashMap<>(RichTextElement.getConcreteTagTypes());
+
+            tagTypes.put(ReferenceRichTextElement.TAG_NAME, ObjectType.getInstance(ReferenceRichTextElement.class));
+
+            return Collections.unmodifiableMap(tagTypes);
+        }
+    };
+
+    private static final Cache<String, List<Part>> PARTS = CacheBuilder
+            .newBuilder()
+            .maximumSize(Settings.getOrDefault(long.class, "brightspot/richTextViewCacheMaximumSize", 1000L))
+            .build();
+
+    static {
+        CodeUtils.addRedefineClassesListener(classes -> {
+            TAG_TYPES.reset();
+            PARTS.invalidateAll();
+        });
+    }
+
     private final String html;
     private Function<String, V> htmlToView;
     private Function<RichTextElement, V> elementToView;
     private boolean keepUnboundElements;
+    private boolean cache;
     private final List<RichTextPreprocessor> preprocessors = new ArrayList<>();
 
     /**
@@ -133,6 +163,7 @@ public class RichTextViewBuilder<V> {
             return new RichTextViewBuilder<V>(html)
                     .addPreprocessor(new EditorialMarkupRichTextPreprocessor())
                     .addPreprocessor(new LineBreakRichTextPreprocessor())
+                    .cache(true)
                     .elementToView(elementToView)
                     .build();
 
@@ -190,6 +221,25 @@ public class RichTextViewBuilder<V> {
         return this;
     }
 
+    /**
+     * Sets whether the result of parsing and preprocessing the HTML should
+     * be cached across builders, so that only the {@link #htmlToView} and
+     * {@link #elementToView} functions run when the same HTML is built
+     * again.
+     *
+     * <p>The cache is keyed by the hash of the HTML and the
+     * {@linkplain RichTextPreprocessor#getCacheKey cache keys} of the
+     * preprocessors. It's bypassed if any of the preprocessors doesn't have
+     * a cache key. Its size is set with
+     * {@code brightspot/richTextViewCacheMaximumSize}.</p>
+     *
+     * @return Itself.
+     */
+    public RichTextViewBuilder<V> cache(boolean cache) {
+        this.cache = cache;
+        return this;
+    }
+
     /**
      * Adds a rich text preprocessor to be applied to the rich text prior to the
      * transformation into a set of views.
@@ -210,10 +260,78 @@ public class RichTextViewBuilder<V> {
      */
     public List<V> build() {
         List<V> views = new ArrayList<>();
-        Map<String, ObjectType> tagTypes = new HashMap<>(RichTextElement.getConcreteTagTypes());
 
-        tagTypes.put(ReferenceRichTextElement.TAG_NAME, ObjectType.getInstance(ReferenceRichTextElement.class));
+        for (Part part : findParts()) {
+            RichTextViewNode<V> viewNode;
+
+            if (part.tagType != null) {
+                RichTextElement rte = (RichTextElement) part.tagType.createObject(null);
+
+                rte.fromAttributes(new HashMap<>(part.attributes));
+                rte.fromBody(part.body);
+
+                viewNode = new ElementRichTextViewNode<>(rte, elementToView);
+
+            } else {
+                viewNode = new StringRichTextViewNode<>(part.html, htmlToView);
+            }
+
+            V view = viewNode.toView();
+
+            if (view != null) {
+                views.add(view);
+            }
+        }
+
+        return views;
+    }
+
+    // Returns the cached parts if possible.
+    private List<Part> findParts() {
+        String cacheKey = createCacheKey();
+
+        if (cacheKey == null) {
+            return createParts();
+        }
+
+        List<Part> parts = PARTS.getIfPresent(cacheKey);
 
+        if (parts == null) {
+            parts = createParts();
+            PARTS.put(cacheKey, parts);
+        }
+
+        return parts;
+    }
+
+    private String createCacheKey() {
+        if (!cache) {
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder();
+
+        key.append(StringUtils.hex(StringUtils.md5(html)));
+        key.append('/');
+        key.append(keepUnboundElements);
+        key.append('/');
+        key.append(elementToView != null);
+
+        for (RichTextPreprocessor preprocessor : preprocessors) {
+            String preprocessorKey = preprocessor.getCacheKey();
+
+            if (preprocessorKey == null) {
+                return null;
+            }
+
+            key.append('/');
+            key.append(preprocessorKey);
+        }
+
+        return key.toString();
+    }
+
+    private List<Part> createParts() {
         Document document = Jsoup.parseBodyFragment(html);
 
         document.outputSettings().prettyPrint(false);
@@ -222,92 +340,103 @@ public class RichTextViewBuilder<V> {
             preprocessor.preprocess(document.body());
         }
 
-        toViewNodes(document.body().childNodes(), tagTypes)
-                .stream()
-                .map(RichTextViewNode::toView)
-                .filter(Objects::nonNull)
-                .forEach(views::add);
+        PartsBuilder builder = new PartsBuilder(TAG_TYPES.get());
 
-        return views;
+        builder.addNodes(document.body().childNodes());
+
+        return builder.build();
     }
 
-    // Traverses the siblings all the way down the tree, collapsing balanced
-    // blocks of HTML that do NOT contain any rich text elements into a single
-    // HTML string.
-    private List<RichTextViewNode<V>> toViewNodes(List<Node> siblings, Map<String, ObjectType> tagTypes) {
-        List<RichTextViewNode<V>> viewNodes = new ArrayList<>();
+    // Either a block of HTML or a rich text element that's bound to a view.
+    private static final class Part {
 
-        for (Node sibling : siblings) {
-            if (sibling instanceof Element) {
-                Element element = (Element) sibling;
-                ObjectType tagType = tagTypes.get(element.tagName());
+        public final String html;
+        public final ObjectType tagType;
+        public final Map<String, String> attributes;
+        public final String body;
 
-                if (tagType != null && elementToView != null) {
-                    RichTextElement rte = (RichTextElement) tagType.createObject(null);
+        public Part(String html) {
+            this.html = html;
+            this.tagType = null;
+            this.attributes = null;
+            this.body = null;
+        }
 
-                    rte.fromAttributes(StreamSupport
-                            .stream(element.attributes().spliterator(), false)
-                            .collect(Collectors.toMap(Attribute::getKey, Attribute::getValue)));
+        public Part(ObjectType tagType, Map<String, String> attributes, String body) {
+            this.html = null;
+            this.tagType = tagType;
+            this.attributes = attributes;
+            this.body = body;
+        }
+    }
 
-                    rte.fromBody(element.html());
+    // Traverses the tree once, collapsing balanced blocks of HTML that do NOT
+    // contain any rich text elements into a single HTML string. The tags of
+    // the elements are written individually so that no subtree is ever
+    // serialized more than once.
+    private class PartsBuilder {
 
-                    viewNodes.add(new ElementRichTextViewNode<>(rte, elementToView));
+        private final Map<String, ObjectType> tagTypes;
+        private final List<Part> parts = new ArrayList<>();
+        private final StringBuilder pendingHtml = new StringBuilder();
+        private boolean pending;
 
-                } else if (tagType == null || keepUnboundElements) {
-                    List<RichTextViewNode<V>> childViewNodes = toViewNodes(element.childNodes(), tagTypes);
-                    String html = element.outerHtml();
+        public PartsBuilder(Map<String, ObjectType> tagTypes) {
+            this.tagTypes = tagTypes;
+        }
 
-                    if (element.tag().isSelfClosing()) {
-                        viewNodes.add(new StringRichTextViewNode<>(html, htmlToView));
+        public void addNodes(List<Node> siblings) {
+            for (Node sibling : siblings) {
+                if (sibling instanceof Element) {
+                    addElement((Element) sibling);
 
-                    } else {
-                        int firstGtAt = html.indexOf('>');
-                        int lastLtAt = html.lastIndexOf('<');
+                } else if (sibling instanceof TextNode) {
+                    addHtml(sibling.outerHtml());
 
-                        // This deliberately does not validate the index values
-                        // above, since non-self-closing element should always
-                        // have those characters present in the HTML.
-                        viewNodes.add(new StringRichTextViewNode<>(html.substring(0, firstGtAt + 1), htmlToView));
-                        viewNodes.addAll(childViewNodes);
-                        viewNodes.add(new StringRichTextViewNode<>(html.substring(lastLtAt), htmlToView));
-                    }
+                } else if (sibling instanceof DataNode) {
+                    addHtml(((DataNode) sibling).getWholeData());
                 }
-
-            } else if (sibling instanceof TextNode) {
-                viewNodes.add(new StringRichTextViewNode<>(sibling.outerHtml(), htmlToView));
-
-            } else if (sibling instanceof DataNode) {
-                viewNodes.add(new StringRichTextViewNode<>(((DataNode) sibling).getWholeData(), htmlToView));
             }
         }
 
-        // Collapse the nodes as much as possible.
-        List<RichTextViewNode<V>> collapsed = new ArrayList<>();
-        List<StringRichTextViewNode<V>> adjacent = new ArrayList<>();
+        private void addElement(Element element) {
+            ObjectType tagType = tagTypes.get(element.tagName());
 
-        for (RichTextViewNode<V> childBuilderNode : viewNodes) {
-            if (childBuilderNode instanceof StringRichTextViewNode) {
-                adjacent.add((StringRichTextViewNode<V>) childBuilderNode);
+            if (tagType != null && elementToView != null) {
+                Map<String, String> attributes = StreamSupport
+                        .stream(element.attributes().spliterator(), false)
+                        .collect(Collectors.toMap(Attribute::getKey, Attribute::getValue));
 
-            } else {
-                collapsed.add(new StringRichTextViewNode<>(
-                        adjacent.stream()
-                                .map(StringRichTextViewNode::getHtml)
-                                .collect(Collectors.joining()), htmlToView));
+                parts.add(new Part(pendingHtml.toString()));
+                parts.add(new Part(tagType, Collections.unmodifiableMap(attributes), element.html()));
+                pendingHtml.setLength(0);
+                pending = false;
 
-                adjacent.clear();
+            } else if (tagType == null || keepUnboundElements) {
+                if (element.tag().isSelfClosing()) {
+                    addHtml(element.outerHtml());
 
-                collapsed.add(childBuilderNode);
+                } else {
+                    addHtml("<" + element.tagName() + element.attributes().html() + ">");
+                    addNodes(element.childNodes());
+                    addHtml("</" + element.tagName() + ">");
+                }
             }
         }
 
-        if (!adjacent.isEmpty()) {
-            collapsed.add(new StringRichTextViewNode<>(
-                    adjacent.stream()
-                            .map(StringRichTextViewNode::getHtml)
-                            .collect(Collectors.joining()), htmlToView));
+        private void addHtml(String html) {
+            pendingHtml.append(html);
+            pending = true;
         }
 
-        return collapsed;
+        public List<Part> build() {
+            if (pending) {
+                parts.add(new Part(pendingHtml.toString()));
+                pendingHtml.setLength(0);
+                pending = false;
+            }
+
+            return Collections.unmodifiableList(parts);
+        }
     }
 }
@@ -150,7 +150,7 @@ public class AuthenticationFilter extends AbstractFilter {
             c.setMaxAge(maxAge);
             c.setSecure(secure && JspUtils.isSecure(request));
 
-            String siteUrl = Query.from(CmsTool.class).first().getDefaultSiteUrl();
+            String siteUrl = CmsToolSnapshot.get().getDefaultSiteUrl();
 
             if (!ObjectUtils.isBlank(siteUrl)) {
                 siteUrl = siteUrl.replaceFirst("^(?i)(?:https?://)?(?:www\\.)?", "");
@@ -1171,6 +1171,7 @@ public class CmsTool extends Tool {
                     && (oldLastUpdate == null
                     || !newLastUpdate.equals(oldLastUpdate))) {
                 oldLastUpdate = newLastUpdate;
+                CmsToolSnapshot.invalidate();
                 Map<String, Object> settings = new CompactMap<String, Object>();
 
                 for (DariSetting s : Query.from(CmsTool.class).first().getDariSettings()) {
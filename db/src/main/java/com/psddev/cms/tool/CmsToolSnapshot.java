@@ -0,0 +1,195 @@
+package com.psddev.cms.tool;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.psddev.dari.db.Database;
+import com.psddev.dari.db.Query;
+import com.psddev.dari.db.UpdateNotifier;
+
+/**
+ * Immutable snapshot of the {@link CmsTool} settings that are read on
+ * every request, so that the call sites don't have to query for the
+ * singleton each time.
+ *
+ * <p>The snapshot is only cached while it's {@linkplain #register
+ * registered} as an update notifier on a database, which rebuilds it
+ * whenever the {@link CmsTool} is saved. Otherwise, {@link #get} builds a
+ * new one on every call.</p>
+ */
+public final class CmsToolSnapshot {
+
+    private static final SnapshotUpdateNotifier NOTIFIER = new SnapshotUpdateNotifier();
+
+    private static volatile Database database;
+    private static volatile CmsToolSnapshot current;
+
+    // Incremented whenever the cached snapshot is replaced or discarded, so
+    // that a snapshot built from an older query never overwrites it.
+    private static final AtomicLong VERSION = new AtomicLong();
+
+    private final boolean disableContentLocking;
+    private final boolean disableInvisibleContentPreview;
+    private final boolean disableRtc;
+    private final boolean disableWorkInProgress;
+    private final boolean displaySiteInSearchResult;
+    private final boolean enableAbTesting;
+    private final boolean removeTrailingSlashes;
+    private final String defaultSiteUrl;
+    private final String googleServerApiKey;
+    private final Set<String> disabledPlugins;
+
+    private CmsToolSnapshot(CmsTool cms) {
+        if (cms != null) {
+            disableContentLocking = cms.isDisableContentLocking();
+            disableInvisibleContentPreview = cms.isDisableInvisibleContentPreview();
+            disableRtc = cms.isDisableRtc();
+            disableWorkInProgress = cms.isDisableWorkInProgress();
+            displaySiteInSearchResult = cms.isDisplaySiteInSearchResult();
+            enableAbTesting = cms.isEnableAbTesting();
+            removeTrailingSlashes = cms.isRemoveTrailingSlashes();
+            defaultSiteUrl = cms.getDefaultSiteUrl();
+            googleServerApiKey = cms.getGoogleServerApiKey();
+            disabledPlugins = Collections.unmodifiableSet(new LinkedHashSet<>(cms.getDisabledPlugins()));
+
+        } else {
+            disableContentLocking = false;
+            disableInvisibleContentPreview = false;
+            disableRtc = false;
+            disableWorkInProgress = false;
+            displaySiteInSearchResult = false;
+            enableAbTesting = false;
+            removeTrailingSlashes = false;
+            defaultSiteUrl = null;
+            googleServerApiKey = null;
+            disabledPlugins = Collections.emptySet();
+        }
+    }
+
+    /**
+     * Returns the snapshot of the current {@link CmsTool} settings.
+     *
+     * @return Nonnull.
+     */
+    public static CmsToolSnapshot get() {
+        CmsToolSnapshot snapshot = current;
+
+        if (snapshot == null) {
+            long version = VERSION.get();
+
+            snapshot = new CmsToolSnapshot(Query.from(CmsTool.class).first());
+
+            synchronized (CmsToolSnapshot.class) {
+                if (database != null && VERSION.get() == version) {
+                    current = snapshot;
+                }
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Discards the cached snapshot so that the next {@link #get} rebuilds
+     * it.
+     */
+    public static synchronized void invalidate() {
+        VERSION.incrementAndGet();
+        current = null;
+    }
+
+    private static synchronized void update(CmsTool cms) {
+        if (database != null) {
+            VERSION.incrementAndGet();
+            current = new CmsToolSnapshot(cms);
+        }
+    }
+
+    /**
+     * Starts listening to the {@link CmsTool} updates in the given
+     * {@code database} and enables caching of the snapshot.
+     *
+     * @param database Nonnull.
+     */
+    public static synchronized void register(Database database) {
+        unregister();
+        database.addUpdateNotifier(NOTIFIER);
+        CmsToolSnapshot.database = database;
+    }
+
+    /**
+     * Stops listening to the {@link CmsTool} updates and disables caching
+     * of the snapshot.
+     */
+    public static synchronized void unregister() {
+        if (database != null) {
+            database.removeUpdateNotifier(NOTIFIER);
+            database = null;
+        }
+
+        invalidate();
+    }
+
+    /** @see CmsTool#isDisableContentLocking */
+    public boolean isDisableContentLocking() {
+        return disableContentLocking;
+    }
+
+    /** @see CmsTool#isDisableInvisibleContentPreview */
+    public boolean isDisableInvisibleContentPreview() {
+        return disableInvisibleContentPreview;
+    }
+
+    /** @see CmsTool#isDisableRtc */
+    public boolean isDisableRtc() {
+        return disableRtc;
+    }
+
+    /** @see CmsTool#isDisableWorkInProgress */
+    public boolean isDisableWorkInProgress() {
+        return disableWorkInProgress;
+    }
+
+    /** @see CmsTool#isDisplaySiteInSearchResult */
+    public boolean isDisplaySiteInSearchResult() {
+        return displaySiteInSearchResult;
+    }
+
+    /** @see CmsTool#isEnableAbTesting */
+    public boolean isEnableAbTesting() {
+        return enableAbTesting;
+    }
+
+    /** @see CmsTool#isRemoveTrailingSlashes */
+    public boolean isRemoveTrailingSlashes() {
+        return removeTrailingSlashes;
+    }
+
+    /** @see CmsTool#getDefaultSiteUrl */
+    public String getDefaultSiteUrl() {
+        return defaultSiteUrl;
+    }
+
+    /** @see CmsTool#getGoogleServerApiKey */
+    public String getGoogleServerApiKey() {
+        return googleServerApiKey;
+    }
+
+    /**
+     * @return Nonnull. Unmodifiable.
+     * @see CmsTool#getDisabledPlugins
+     */
+    public Set<String> getDisabledPlugins() {
+        return disabledPlugins;
+    }
+
+    private static class SnapshotUpdateNotifier implements UpdateNotifier<CmsTool> {
+
+        @Override
+        public void onUpdate(CmsTool cms) {
+            update(cms);
+        }
+    }
+}
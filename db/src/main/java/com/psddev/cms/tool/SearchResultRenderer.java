@@ -90,7 +90,7 @@ public class SearchResultRenderer {
             }
         }
 
-        showSiteLabel = Query.from(CmsTool.class).first().isDisplaySiteInSearchResult()
+        showSiteLabel = CmsToolSnapshot.get().isDisplaySiteInSearchResult()
                 && page.getSite() == null
                 && Query.from(Site.class).hasMoreThan(0);
 
@@ -28,7 +28,7 @@ import com.psddev.cms.db.WorkInProgress;
 import com.psddev.cms.db.Workflow;
 import com.psddev.cms.db.WorkflowLog;
 import com.psddev.cms.tool.AuthenticationFilter;
-import com.psddev.cms.tool.CmsTool;
+import com.psddev.cms.tool.CmsToolSnapshot;
 import com.psddev.cms.tool.PageServlet;
 import com.psddev.cms.tool.ToolPageContext;
 import com.psddev.cms.tool.page.content.Edit;
@@ -250,7 +250,7 @@ public class ContentState extends PageServlet {
                 && page.getOverlaidDraft(object) == null
                 && page.param(boolean.class, "wip")
                 && !user.isDisableWorkInProgress()
-                && !Query.from(CmsTool.class).first().isDisableWorkInProgress()) {
+                && !CmsToolSnapshot.get().isDisableWorkInProgress()) {
 
             ObjectType contentType = state.getType();
             UUID contentId = state.getId();
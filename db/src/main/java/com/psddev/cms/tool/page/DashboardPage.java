@@ -1,7 +1,6 @@
 package com.psddev.cms.tool.page;
 
 import java.io.IOException;
-import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -11,6 +10,7 @@ import javax.servlet.ServletException;
 import com.psddev.cms.db.ToolRole;
 import com.psddev.cms.db.ToolUser;
 import com.psddev.cms.tool.CmsTool;
+import com.psddev.cms.tool.CmsToolSnapshot;
 import com.psddev.cms.tool.Dashboard;
 import com.psddev.cms.tool.DashboardColumn;
 import com.psddev.cms.tool.DashboardTab;
@@ -18,7 +18,6 @@ import com.psddev.cms.tool.DashboardWidget;
 import com.psddev.cms.tool.DashboardContainer;
 import com.psddev.cms.tool.PageServlet;
 import com.psddev.cms.tool.ToolPageContext;
-import com.psddev.dari.db.Query;
 import com.psddev.dari.util.ObjectUtils;
 import com.psddev.dari.util.RoutingFilter;
 
@@ -113,8 +112,7 @@ public class DashboardPage extends PageServlet {
                     totalWidth += width > 0 ? width : 1;
                 }
 
-                CmsTool cms = Query.from(CmsTool.class).first();
-                Set<String> disabled = cms != null ? cms.getDisabledPlugins() : Collections.emptySet();
+                Set<String> disabled = CmsToolSnapshot.get().getDisabledPlugins();
 
                 for (int c = 0, cSize = columns.size(); c < cSize; ++ c) {
                     DashboardColumn column = columns.get(c);
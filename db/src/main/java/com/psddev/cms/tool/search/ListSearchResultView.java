@@ -29,7 +29,7 @@ import com.psddev.cms.db.Renderer;
 import com.psddev.cms.db.Site;
 import com.psddev.cms.db.ToolUi;
 import com.psddev.cms.db.ToolUser;
-import com.psddev.cms.tool.CmsTool;
+import com.psddev.cms.tool.CmsToolSnapshot;
 import com.psddev.cms.tool.SearchResultField;
 import com.psddev.dari.db.Database;
 import com.psddev.dari.db.Metric;
@@ -71,7 +71,7 @@ public class ListSearchResultView extends AbstractSearchResultView {
         ObjectType selectedType = search.getSelectedType();
 
         sortField = updateSort();
-        showSiteLabel = Query.from(CmsTool.class).first().isDisplaySiteInSearchResult()
+        showSiteLabel = CmsToolSnapshot.get().isDisplaySiteInSearchResult()
                 && Query.from(Site.class).hasMoreThan(0);
 
         if (selectedType != null) {
@@ -0,0 +1,111 @@
+package com.psddev.cms.view;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Preconditions;
+import com.psddev.dari.util.IoUtils;
+
+/**
+ * {@link ViewTemplateLoader} that keeps the templates, along with their
+ * last modified timestamps, from another loader in memory.
+ *
+ * <p>The delegate loader is only asked for the last modified timestamp
+ * again once the revalidation interval passes, and the template is only
+ * reloaded if the timestamp changed. The instance is meant to be shared
+ * across requests.</p>
+ */
+public class CachingViewTemplateLoader implements ViewTemplateLoader {
+
+    private final ViewTemplateLoader delegate;
+    private final long revalidationInterval;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate the loader that actually loads the templates.
+     * @param revalidationInterval the minimum number of milliseconds between
+     * the checks for a newer template. If negative, the templates are never
+     * checked again once they're loaded.
+     */
+    public CachingViewTemplateLoader(ViewTemplateLoader delegate, long revalidationInterval) {
+        this.delegate = Preconditions.checkNotNull(delegate);
+        this.revalidationInterval = revalidationInterval;
+    }
+
+    /**
+     * @return the loader that actually loads the templates.
+     */
+    public ViewTemplateLoader getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return the minimum number of milliseconds between the checks for a
+     * newer template, or a negative number if it's never checked.
+     */
+    public long getRevalidationInterval() {
+        return revalidationInterval;
+    }
+
+    /**
+     * Removes all the templates from memory.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public InputStream getTemplate(String path) throws IOException {
+        return new ByteArrayInputStream(getEntry(path).template);
+    }
+
+    @Override
+    public long getLastModified(String path) throws IOException {
+        return getEntry(path).lastModified;
+    }
+
+    private Entry getEntry(String path) throws IOException {
+        Entry entry = entries.get(path);
+        long now = System.currentTimeMillis();
+
+        if (entry != null
+                && (revalidationInterval < 0 || now - entry.checked < revalidationInterval)) {
+
+            return entry;
+        }
+
+        long lastModified = delegate.getLastModified(path);
+
+        if (entry != null && entry.lastModified == lastModified) {
+            entry.checked = now;
+            return entry;
+        }
+
+        byte[] template;
+
+        try (InputStream input = delegate.getTemplate(path)) {
+            template = IoUtils.toByteArray(input);
+        }
+
+        entry = new Entry(template, lastModified, now);
+
+        entries.put(path, entry);
+        return entry;
+    }
+
+    private static final class Entry {
+
+        public final byte[] template;
+        public final long lastModified;
+        public volatile long checked;
+
+        public Entry(byte[] template, long lastModified, long checked) {
+            this.template = template;
+            this.lastModified = lastModified;
+            this.checked = checked;
+        }
+    }
+}
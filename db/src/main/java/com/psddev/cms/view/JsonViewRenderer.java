@@ -1,14 +1,32 @@
 package com.psddev.cms.view;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.psddev.dari.util.ObjectUtils;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
 import java.util.Map;
 
 /**
- * Renderer that converts the views to JSON.
+ * Renderer that converts the views to JSON. Each view property is written
+ * to the target writer as soon as its getter is called.
+ *
+ * <p>The output is only streamed when the view opts into it with
+ * {@link StreamOutput}. Otherwise, it's built with {@link ViewOutput#get()}
+ * first, so that an error never leaves a truncated output behind.</p>
  */
 public class JsonViewRenderer implements ViewRenderer {
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+
     private boolean includeClassNames;
 
     private boolean indented;
@@ -56,13 +74,135 @@ public class JsonViewRenderer implements ViewRenderer {
     @Override
     public ViewOutput render(Object view, ViewTemplateLoader loader) {
 
-        Map<?, ?> viewMap;
-        if (view instanceof Map) {
-            viewMap = (Map<?, ?>) view;
+        // Read through the getters once per render, so that subclasses can
+        // compute them.
+        boolean indent = isIndented();
+
+        ViewMap viewMap;
+        if (view instanceof ViewMap) {
+            viewMap = (ViewMap) view;
+
+        } else if (view instanceof Map) {
+
+            // Arbitrary maps can contain values that only ObjectUtils#toJson
+            // knows how to convert.
+            return () -> ObjectUtils.toJson(view, indent);
+
         } else {
-            viewMap = new ViewMap(view, includeClassNames);
+            viewMap = new ViewMap(view, isIncludeClassNames());
         }
 
-        return () -> ObjectUtils.toJson(viewMap, indented);
+        return new StreamingViewOutput() {
+
+            @Override
+            public String get() {
+                StringWriter buffer = new StringWriter();
+
+                try {
+                    writeJson(buffer, viewMap, indent);
+
+                } catch (IOException error) {
+                    throw new UncheckedIOException(error);
+                }
+
+                return buffer.toString();
+            }
+
+            @Override
+            public void writeTo(Writer writer) throws IOException {
+                writeJson(writer, viewMap, indent);
+            }
+        };
+    }
+
+    // Writes the same JSON as ObjectUtils#toJson, but resolves the view
+    // properties as it goes, so that the whole tree doesn't have to be
+    // resolved into intermediate maps first. ViewMap only contains strings,
+    // booleans, numbers, lists, maps and other ViewMaps.
+    private void writeJson(Writer writer, ViewMap viewMap, boolean indent) throws IOException {
+        JsonGenerator generator = JSON_FACTORY.createGenerator(writer);
+
+        try {
+            if (indent) {
+                generator.useDefaultPrettyPrinter();
+            }
+
+            writeValue(generator, viewMap);
+
+        } catch (IOException | RuntimeException | Error error) {
+            viewMap.close();
+            throw error;
+
+        } finally {
+            generator.close();
+        }
+    }
+
+    private void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value instanceof ViewMap) {
+            generator.writeStartObject();
+
+            ((ViewMap) value).forEachResolving((key, item) -> {
+                generator.writeFieldName(key);
+                writeValue(generator, item);
+            });
+
+            generator.writeEndObject();
+
+        } else if (value instanceof Map) {
+            generator.writeStartObject();
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(generator, entry.getValue());
+            }
+
+            generator.writeEndObject();
+
+        } else if (value instanceof Collection) {
+            generator.writeStartArray();
+
+            for (Object item : (Collection<?>) value) {
+                writeValue(generator, item);
+            }
+
+            generator.writeEndArray();
+
+        } else if (value == null) {
+            generator.writeNull();
+
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+
+        } else if (value instanceof Integer
+                || value instanceof Short
+                || value instanceof Byte) {
+
+            generator.writeNumber(((Number) value).intValue());
+
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+
+        } else if (value instanceof Double) {
+            generator.writeNumber((Double) value);
+
+        } else if (value instanceof Float) {
+            generator.writeNumber((Float) value);
+
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+
+        } else {
+
+            // Anything else is rare enough to be encoded by
+            // ObjectUtils#toJson, so that it's the same as before.
+            generator.writeRawValue(ObjectUtils.toJson(value));
+        }
     }
 }
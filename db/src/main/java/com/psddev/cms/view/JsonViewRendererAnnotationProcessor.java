@@ -6,16 +6,25 @@ import com.psddev.dari.util.Settings;
  * ViewRenderer annotation processor that associates the
  * {@link JsonView} annotation with a
  * {@link com.psddev.cms.view.JsonViewRenderer}.
+ *
+ * <p>The renderer is cached, so it checks {@link Settings#isProduction()}
+ * on every render instead of when it's created.</p>
  */
 public class JsonViewRendererAnnotationProcessor implements ViewRendererAnnotationProcessor<JsonView> {
 
     @Override
     public ViewRenderer createRenderer(Class<?> viewClass, JsonView annotation) {
-        JsonViewRenderer jsonViewRenderer = new JsonViewRenderer();
+        return new JsonViewRenderer() {
 
-        jsonViewRenderer.setIndented(!Settings.isProduction());
-        jsonViewRenderer.setIncludeClassNames(!Settings.isProduction());
+            @Override
+            public boolean isIndented() {
+                return !Settings.isProduction();
+            }
 
-        return jsonViewRenderer;
+            @Override
+            public boolean isIncludeClassNames() {
+                return !Settings.isProduction();
+            }
+        };
     }
 }
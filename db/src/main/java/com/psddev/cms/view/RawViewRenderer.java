@@ -3,8 +3,6 @@ package com.psddev.cms.view;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
  * A renderer for {@link RawView} that concatenates the calls to {@code toString()}
@@ -50,10 +48,14 @@ public class RawViewRenderer implements ViewRenderer {
             }
         }
 
-        return () -> outputs.stream()
-                .filter(Objects::nonNull)
-                .map(ViewOutput::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.joining());
+        StreamingViewOutput output = writer -> {
+            for (ViewOutput itemOutput : outputs) {
+                if (itemOutput != null) {
+                    itemOutput.writeTo(writer);
+                }
+            }
+        };
+
+        return output;
     }
 }
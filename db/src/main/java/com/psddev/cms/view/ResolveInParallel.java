@@ -0,0 +1,41 @@
+package com.psddev.cms.view;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks view getters that are slow and independent of the other getters,
+ * so that they can be called concurrently in a background thread as soon
+ * as the view is about to be rendered, instead of one after another.
+ *
+ * <p>The getters are submitted when the first getter of the view is called,
+ * and the ones that haven't been asked for yet are cancelled if the
+ * rendering fails.</p>
+ *
+ * <p>The getter runs with the same default {@link com.psddev.dari.db.Database}
+ * as the rendering thread. The request and the response aren't available
+ * through {@link com.psddev.dari.util.PageContextFilter} there, but
+ * {@link ViewResolverExecutor#getRequestOrNull()} returns a copy of the
+ * request's attributes and parameters that was taken in the rendering
+ * thread when the getter was submitted, and
+ * {@link ViewResolverExecutor#getResponseOrNull()} returns the response,
+ * which must only be read. The view models that the getter creates are
+ * injected from the same copy.</p>
+ *
+ * <p>The CMS databases that wrap the default one, such as the ones that
+ * apply the variations and the A/B tests, read what they need from the
+ * request before the rendering starts, and
+ * {@link ViewModel#getRecordLoader()} is thread-safe. Any other state that
+ * the getter shares with the rendering thread or the other parallel getters,
+ * including the view model's own fields and any database that reads the
+ * request lazily, must be thread-safe too, or be injected into the view
+ * model while it's being created instead.</p>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ResolveInParallel {
+}
@@ -0,0 +1,25 @@
+package com.psddev.cms.view;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks view models whose {@link StreamingViewOutput} can be written
+ * directly to the response, instead of being buffered first.
+ *
+ * <p>The response headers are sent before the first byte of a streamed
+ * output, so the getters of the annotated view model, and of all the view
+ * models nested within it, must not throw a {@link ViewResponse}. They also
+ * shouldn't fail halfway, since the client would receive a truncated
+ * response with a successful status.</p>
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface StreamOutput {
+}
@@ -0,0 +1,42 @@
+package com.psddev.cms.view;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * A {@link ViewOutput} that renders directly to a {@link Writer}, so that
+ * the output doesn't have to be fully buffered before it's sent.
+ *
+ * <p>{@link com.psddev.cms.db.PageFilter} only writes a streaming output
+ * directly to the response if the view model is annotated with
+ * {@link StreamOutput}. Otherwise, it's buffered with {@link #get()} before
+ * the response headers are set, so that a {@link ViewResponse} thrown while
+ * rendering still applies.</p>
+ */
+@FunctionalInterface
+public interface StreamingViewOutput extends ViewOutput {
+
+    /**
+     * Buffers the output written by {@link #writeTo(Writer)} and returns it.
+     *
+     * @return the text output from a rendered view.
+     */
+    @Override
+    default String get() {
+        StringWriter writer = new StringWriter();
+
+        try {
+            writeTo(writer);
+
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+
+        return writer.toString();
+    }
+
+    @Override
+    void writeTo(Writer writer) throws IOException;
+}
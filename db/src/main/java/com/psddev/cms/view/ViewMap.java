@@ -1,5 +1,6 @@
 package com.psddev.cms.view;
 
+import com.psddev.dari.util.CodeUtils;
 import com.psddev.dari.util.Once;
 import com.psddev.dari.util.Settings;
 import com.psddev.dari.util.StringUtils;
@@ -11,19 +12,26 @@ import java.beans.IntrospectionException;
 import java.beans.Introspector;
 
 import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -36,7 +44,27 @@ class ViewMap implements Map<String, Object> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ViewMap.class);
 
-    private Map<String, Supplier<Object>> unresolved;
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    // Accessor tables shared by all instances, keyed by the view class.
+    private static final ConcurrentMap<Class<?>, Accessors> ACCESSORS = new ConcurrentHashMap<>();
+
+    static {
+        CodeUtils.addRedefineClassesListener(classes -> ACCESSORS.clear());
+    }
+
+    private Accessors accessors;
+
+    // Accessors that have already been invoked, by their index.
+    private boolean[] invoked;
+
+    // Results of the accessors that are resolved in parallel, by their index.
+    private Future<?>[] futures;
+
+    private boolean submitted;
+
+    // Maps created for the nested views, so that they can be closed too.
+    private List<ViewMap> children;
 
     private Map<String, Object> resolved;
 
@@ -47,8 +75,9 @@ class ViewMap implements Map<String, Object> {
     private Once resolver = new Once() {
         @Override
         protected void run() throws Exception {
-            // copy keys to new set to prevent concurrent modification exception.
-            new LinkedHashSet<>(ViewMap.this.unresolved.keySet()).forEach(ViewMap.this::get);
+            for (String name : accessors.names) {
+                ViewMap.this.get(name);
+            }
         }
     };
 
@@ -70,31 +99,10 @@ class ViewMap implements Map<String, Object> {
     public ViewMap(Object view, boolean includeClassName) {
         this.includeClassName = includeClassName;
         this.view = view;
-        this.unresolved = new LinkedHashMap<>();
+        this.accessors = getAccessors(view.getClass());
+        this.invoked = new boolean[accessors.names.length];
         this.resolved = new LinkedHashMap<>();
 
-        // find all the classes that should be checked for bean properties
-        getViewClasses(view)
-                .stream()
-                // grab the list of bean property descriptors
-                .map(ViewMap::getBeanPropertyDescriptors)
-                // flatten the descriptors across all the classes
-                .flatMap(Collection::stream)
-                // exclude the getClass() method
-                .filter((prop) -> !"class".equals(prop.getName()))
-                // ensure the read (getter) method is present
-                .filter((prop) -> prop.getReadMethod() != null)
-                // load the properties into a map.
-                .collect(Collectors.toMap(
-                        // key is the descriptor name
-                        PropertyDescriptor::getName,
-                        // value is a supplier of the read method's value.
-                        prop -> () -> invoke(prop.getReadMethod(), view),
-                        // merge function just keeps the original value
-                        (m1, m2) -> m1,
-                        // store them in the unresolved map
-                        () -> unresolved));
-
         if (includeClassName) {
             resolved.put("class", view.getClass().getName());
         }
@@ -139,10 +147,12 @@ class ViewMap implements Map<String, Object> {
                 return resolved.get(key);
 
             } else {
-                Supplier<Object> supplier = unresolved.remove(key);
+                Integer index = accessors.indexes.get(key);
+
+                if (index != null && !invoked[index]) {
+                    invoked[index] = true;
 
-                if (supplier != null) {
-                    Object value = convertValue((String) key, supplier.get());
+                    Object value = convertValue((String) key, resolve(index));
                     if (value != null) {
                         resolved.put((String) key, value);
                     }
@@ -157,6 +167,120 @@ class ViewMap implements Map<String, Object> {
         }
     }
 
+    // Submits the accessors that are resolved in parallel when the first
+    // accessor is invoked, so that the maps that are never rendered don't
+    // use any background threads.
+    private void submitParallel() {
+        if (submitted) {
+            return;
+        }
+
+        submitted = true;
+
+        if (!accessors.anyParallel) {
+            return;
+        }
+
+        Accessors a = accessors;
+        Object v = view;
+        futures = new Future<?>[a.names.length];
+
+        for (int i = 0, length = a.names.length; i < length; ++ i) {
+            if (a.parallel[i] && !invoked[i]) {
+                int index = i;
+                futures[i] = ViewResolverExecutor.submit(() -> a.invoke(index, v));
+            }
+        }
+    }
+
+    // Invokes the accessor at the given index, or waits for its result if
+    // it's being resolved in parallel.
+    private Object resolve(int index) {
+        submitParallel();
+
+        Future<?> future = futures != null ? futures[index] : null;
+
+        if (future == null) {
+            return accessors.invoke(index, view);
+        }
+
+        futures[index] = null;
+
+        try {
+            return future.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+
+            } else {
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    /**
+     * Resolves the entries one by one, in the same order as
+     * {@link #entrySet()}, and passes each one to the given
+     * {@code consumer} as soon as it's resolved.
+     *
+     * @param consumer the consumer of the entries.
+     * @throws IOException if the consumer fails.
+     */
+    void forEachResolving(EntryConsumer consumer) throws IOException {
+        for (Map.Entry<String, Object> entry : new ArrayList<>(resolved.entrySet())) {
+            consumer.accept(entry.getKey(), entry.getValue());
+        }
+
+        for (String name : accessors.names) {
+            if (!invoked[accessors.indexes.get(name)]) {
+                Object value = get(name);
+
+                if (value != null) {
+                    consumer.accept(name, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels the accessors that were submitted to be resolved in parallel
+     * but haven't been asked for yet, in this map and in all the maps
+     * nested within it. This should be called when the rendering fails, so
+     * that the background threads aren't kept busy with results that will
+     * never be used.
+     *
+     * <p>Accessors that are already running aren't interrupted, since they
+     * may be in the middle of a database call.</p>
+     */
+    void close() {
+        if (futures != null) {
+            for (int i = 0, length = futures.length; i < length; ++ i) {
+                Future<?> future = futures[i];
+
+                if (future != null) {
+                    future.cancel(false);
+                    futures[i] = null;
+                }
+            }
+        }
+
+        if (children != null) {
+            for (ViewMap child : children) {
+                child.close();
+            }
+        }
+    }
+
     @Override
     public Object put(String key, Object value) {
         throw new UnsupportedOperationException();
@@ -246,8 +370,15 @@ class ViewMap implements Map<String, Object> {
 
             return convertedMap;
 
-        } else if (value != null && !getViewClasses(value).isEmpty()) {
-            return new ViewMap(value, includeClassName);
+        } else if (value != null && getAccessors(value.getClass()).view) {
+            ViewMap child = new ViewMap(value, includeClassName);
+
+            if (children == null) {
+                children = new ArrayList<>();
+            }
+
+            children.add(child);
+            return child;
 
         } else if (value != null) {
             LOGGER.warn("Unsupported type [{}] returned from [{}#{}].",
@@ -261,16 +392,21 @@ class ViewMap implements Map<String, Object> {
         return null;
     }
 
-    private static Object invoke(Method method, Object view) {
+    private static Object invoke(Method method, MethodHandle handle, Object view) {
         try {
-            method.setAccessible(true);
-            return method.invoke(view);
+            if (handle != null) {
+                return (Object) handle.invokeExact(view);
+
+            } else {
+                method.setAccessible(true);
+                return method.invoke(view);
+            }
 
-        } catch (IllegalAccessException | InvocationTargetException e) {
+        } catch (Throwable e) {
 
             String message = "Failed to invoke method: " + method;
 
-            Throwable cause = e.getCause();
+            Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
             cause = cause != null ? cause : e;
 
             ViewResponse response = ViewResponse.findInExceptionChain(cause);
@@ -288,12 +424,17 @@ class ViewMap implements Map<String, Object> {
         }
     }
 
+    // Gets the accessor table for the specified class, building it on first use.
+    private static Accessors getAccessors(Class<?> objectClass) {
+        return ACCESSORS.computeIfAbsent(objectClass, Accessors::new);
+    }
+
     // Gets a list of all the classes that are implemented by the view objects
     // and are annotated with @ViewInterface.
-    private static List<Class<?>> getViewClasses(Object view) {
+    private static List<Class<?>> getViewClasses(Class<?> objectClass) {
 
         // find all the classes that could contain annotations
-        return ViewUtils.getAnnotatableClasses(view.getClass())
+        return ViewUtils.getAnnotatableClasses(objectClass)
                 .stream()
                 // that are annotated with @ViewInterface
                 .filter(klass -> klass.isAnnotationPresent(ViewInterface.class))
@@ -311,4 +452,103 @@ class ViewMap implements Map<String, Object> {
             return Collections.emptyList();
         }
     }
+
+    /**
+     * Consumer of the entries passed to {@link #forEachResolving}.
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+
+        void accept(String key, Object value) throws IOException;
+    }
+
+    /**
+     * Getters of all the bean properties of a view class, in the same order
+     * as the map keys.
+     */
+    private static final class Accessors {
+
+        public final boolean view;
+        public final boolean anyParallel;
+        public final boolean[] parallel;
+        public final String[] names;
+        public final Map<String, Integer> indexes;
+        private final Method[] methods;
+        private final MethodHandle[] handles;
+
+        public Accessors(Class<?> objectClass) {
+            List<Class<?>> viewClasses = getViewClasses(objectClass);
+            Map<String, Method> methodsByName = new LinkedHashMap<>();
+
+            // find all the classes that should be checked for bean properties
+            viewClasses
+                    .stream()
+                    // grab the list of bean property descriptors
+                    .map(ViewMap::getBeanPropertyDescriptors)
+                    // flatten the descriptors across all the classes
+                    .flatMap(Collection::stream)
+                    // exclude the getClass() method
+                    .filter((prop) -> !"class".equals(prop.getName()))
+                    // ensure the read (getter) method is present
+                    .filter((prop) -> prop.getReadMethod() != null)
+                    // keep the original read method on duplicate names
+                    .forEach(prop -> methodsByName.putIfAbsent(prop.getName(), prop.getReadMethod()));
+
+            int size = methodsByName.size();
+            int index = 0;
+            boolean anyParallel = false;
+
+            this.view = !viewClasses.isEmpty();
+            this.names = new String[size];
+            this.indexes = new HashMap<>();
+            this.methods = new Method[size];
+            this.handles = new MethodHandle[size];
+            this.parallel = new boolean[size];
+
+            for (Map.Entry<String, Method> entry : methodsByName.entrySet()) {
+                Method method = entry.getValue();
+
+                names[index] = entry.getKey();
+                indexes.put(entry.getKey(), index);
+                methods[index] = method;
+                handles[index] = unreflect(method);
+                parallel[index] = isParallel(objectClass, method);
+                anyParallel |= parallel[index];
+                ++ index;
+            }
+
+            this.anyParallel = anyParallel;
+        }
+
+        // Checks for the annotation on both the view interface method and
+        // its implementation.
+        private static boolean isParallel(Class<?> objectClass, Method method) {
+            if (method.isAnnotationPresent(ResolveInParallel.class)) {
+                return true;
+            }
+
+            try {
+                return objectClass.getMethod(method.getName(), method.getParameterTypes()).isAnnotationPresent(ResolveInParallel.class);
+
+            } catch (NoSuchMethodException error) {
+                return false;
+            }
+        }
+
+        // Returns null if the method isn't accessible, so that it's invoked
+        // reflectively instead.
+        private static MethodHandle unreflect(Method method) {
+            try {
+                method.setAccessible(true);
+                return MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE);
+
+            } catch (IllegalAccessException | RuntimeException error) {
+                return null;
+            }
+        }
+
+        public Object invoke(int index, Object view) {
+            return ViewMap.invoke(methods[index], handles[index], view);
+        }
+    }
 }
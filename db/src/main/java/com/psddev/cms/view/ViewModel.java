@@ -6,12 +6,17 @@ import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.psddev.dari.util.CodeUtils;
 import com.psddev.dari.util.TypeDefinition;
 
 /**
@@ -23,6 +28,14 @@ public abstract class ViewModel<M> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ViewModel.class);
 
+    // Results of findViewModelClass, including the negative ones, since they
+    // only depend on the classes and the view type.
+    private static final ConcurrentMap<BindingKey, Optional<Class<?>>> BINDINGS = new ConcurrentHashMap<>();
+
+    static {
+        CodeUtils.addRedefineClassesListener(classes -> BINDINGS.clear());
+    }
+
     private ViewModelCreator viewModelCreator;
 
     private ViewResponse viewResponse;
@@ -39,6 +52,21 @@ public abstract class ViewModel<M> {
         // do nothing by default
     }
 
+    /**
+     * Returns the loader that batches the record lookups made by all the
+     * view models that are rendered together, so that the records they
+     * reference don't have to be fetched one at a time.
+     *
+     * @return the record loader. Never {@code null}.
+     */
+    protected final ViewRecordLoader getRecordLoader() {
+        if (viewModelCreator == null) {
+            viewModelCreator = new DefaultCreator();
+        }
+
+        return viewModelCreator.getRecordLoader();
+    }
+
     /**
      * Creates a view of type {@code viewClass} that is bound to the given
      * {@code model}.
@@ -93,6 +121,17 @@ public abstract class ViewModel<M> {
      */
     public static class DefaultCreator implements ViewModelCreator {
 
+        private ViewRecordLoader recordLoader;
+
+        @Override
+        public synchronized ViewRecordLoader getRecordLoader() {
+            if (recordLoader == null) {
+                recordLoader = new ViewRecordLoader();
+            }
+
+            return recordLoader;
+        }
+
         @Override
         public final <M, VM extends ViewModel<? super M>> VM createViewModel(Class<VM> viewModelClass, M model, ViewResponse viewResponse) {
 
@@ -147,7 +186,17 @@ public abstract class ViewModel<M> {
             return null;
         }
 
-        Class<?> modelClass = model.getClass();
+        @SuppressWarnings("unchecked")
+        Class<? extends ViewModel<? super M>> viewModelClass = (Class<? extends ViewModel<? super M>>) BINDINGS
+                .computeIfAbsent(
+                        new BindingKey(model.getClass(), viewClass, viewType),
+                        key -> Optional.ofNullable(findViewModelClassUncached(key.viewClass, key.viewType, key.modelClass)))
+                .orElse(null);
+
+        return viewModelClass;
+    }
+
+    private static Class<?> findViewModelClassUncached(Class<?> viewClass, String viewType, Class<?> modelClass) {
 
         // if it's a view model class, with no type specified, then just verify that the model types match.
         if (viewClass != null && viewType == null
@@ -157,10 +206,7 @@ public abstract class ViewModel<M> {
 
             if (declaredModelClass != null && declaredModelClass.isAssignableFrom(modelClass)) {
 
-                @SuppressWarnings("unchecked")
-                Class<? extends ViewModel<? super M>> viewModelClass = (Class<? extends ViewModel<? super M>>) viewClass;
-
-                return viewModelClass;
+                return viewClass;
 
             } else {
                 return null;
@@ -205,20 +251,17 @@ public abstract class ViewModel<M> {
 
             if (!modelToViewModelClassMap.isEmpty()) {
 
-                Set<Class<?>> nearestModelClasses = ViewUtils.getNearestSuperClassesInSet(model.getClass(), modelToViewModelClassMap.keySet());
+                Set<Class<?>> nearestModelClasses = ViewUtils.getNearestSuperClassesInSet(modelClass, modelToViewModelClassMap.keySet());
                 if (nearestModelClasses.size() == 1) {
 
                     List<Class<? extends ViewModel>> viewModelClasses = modelToViewModelClassMap.get(nearestModelClasses.iterator().next());
                     if (viewModelClasses.size() == 1) {
-                        @SuppressWarnings("unchecked")
-                        Class<? extends ViewModel<? super M>> viewModelClass = (Class<? extends ViewModel<? super M>>) (Object) viewModelClasses.get(0);
-
-                        return viewModelClass;
+                        return viewModelClasses.get(0);
                     } else {
                         LOGGER.warn("Found [{}] conflicting view model bindings for model type [{}] and view type [{}]: [{}]",
                                 new Object[] {
                                         viewModelClasses.size(),
-                                        model.getClass(),
+                                        modelClass,
                                         viewClass != null ? viewClass.getName() : null,
                                         viewModelClasses.stream().map(Class::getName).collect(Collectors.joining(", "))
                                 });
@@ -231,7 +274,7 @@ public abstract class ViewModel<M> {
                     LOGGER.warn("Found [{}] conflicting view model bindings for model type [{}] and view type [{}]: [{}]",
                             new Object[] {
                                     conflictingViewModelClasses.size(),
-                                    model.getClass().getName(),
+                                    modelClass.getName(),
                                     viewClass != null ? viewClass.getName() : null,
                                     conflictingViewModelClasses.stream().map(Class::getName).collect(Collectors.joining(", "))
                             });
@@ -241,4 +284,39 @@ public abstract class ViewModel<M> {
 
         return null;
     }
+
+    private static final class BindingKey {
+
+        private final Class<?> modelClass;
+        private final Class<?> viewClass;
+        private final String viewType;
+
+        public BindingKey(Class<?> modelClass, Class<?> viewClass, String viewType) {
+            this.modelClass = modelClass;
+            this.viewClass = viewClass;
+            this.viewType = viewType;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+
+            } else if (other instanceof BindingKey) {
+                BindingKey otherKey = (BindingKey) other;
+
+                return modelClass.equals(otherKey.modelClass)
+                        && Objects.equals(viewClass, otherKey.viewClass)
+                        && Objects.equals(viewType, otherKey.viewType);
+
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(modelClass, viewClass, viewType);
+        }
+    }
 }
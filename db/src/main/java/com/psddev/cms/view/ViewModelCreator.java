@@ -17,4 +17,16 @@ public interface ViewModelCreator {
      * @return a newly created ViewModel of the specified {@code viewModelClass} type.
      */
     <M, VM extends ViewModel<? super M>> VM createViewModel(Class<VM> viewModelClass, M model, ViewResponse viewResponse);
+
+    /**
+     * Returns the loader that batches the record lookups made by the view
+     * models that this creator creates. Implementations should return the
+     * same instance for all the view models that are rendered together.
+     * By default, it's the same instance for the lifetime of this creator.
+     *
+     * @return the record loader. Never {@code null}.
+     */
+    default ViewRecordLoader getRecordLoader() {
+        return ViewRecordLoader.getInstance(this);
+    }
 }
@@ -1,8 +1,13 @@
 package com.psddev.cms.view;
 
+import java.io.IOException;
+import java.io.Writer;
+
 /**
  * The result of {@link com.psddev.cms.view.ViewRenderer#render(Object)
  * rendering} a view.
+ *
+ * @see StreamingViewOutput
  */
 public interface ViewOutput {
 
@@ -12,4 +17,20 @@ public interface ViewOutput {
      * @return the text output from a rendered view.
      */
     String get();
+
+    /**
+     * Writes the rendered view's output to the given {@code writer}. The
+     * default implementation writes the result of {@link #get()}, if it's
+     * not {@code null}.
+     *
+     * @param writer the writer to write the output to.
+     * @throws IOException if the output can't be written.
+     */
+    default void writeTo(Writer writer) throws IOException {
+        String output = get();
+
+        if (output != null) {
+            writer.write(output);
+        }
+    }
 }
@@ -0,0 +1,320 @@
+package com.psddev.cms.view;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import com.google.common.cache.CacheBuilder;
+import com.psddev.dari.db.Database;
+import com.psddev.dari.db.Query;
+import com.psddev.dari.db.State;
+import com.psddev.dari.util.ObjectUtils;
+
+/**
+ * Batches the record lookups made by the view models, so that the records
+ * referenced by a whole list of view models can be fetched with a single
+ * query instead of one query each.
+ *
+ * <p>View models should ask for the records as early as possible, for
+ * example in {@link ViewModel#onCreate}, and only call the returned
+ * suppliers in their getters. The first supplier that's called fetches all
+ * the records that have been asked for up to that point.</p>
+ *
+ * <p>The references are fetched from the same database as the model that
+ * contains them, and include the invisible records if the model was
+ * {@linkplain State#isResolveInvisible resolving them}, as they would be
+ * if the reference was resolved by the model itself. The references with
+ * different settings are fetched in separate batches.</p>
+ *
+ * @see ViewModel#getRecordLoader()
+ */
+public class ViewRecordLoader {
+
+    private static final Source DEFAULT_SOURCE = new Source(null, false);
+
+    // Loaders for the view model creators that don't keep their own.
+    private static final ConcurrentMap<ViewModelCreator, ViewRecordLoader> CREATOR_LOADERS = CacheBuilder
+            .newBuilder()
+            .weakKeys()
+            .<ViewModelCreator, ViewRecordLoader>build()
+            .asMap();
+
+    private final Map<Source, Batch> batches = new HashMap<>();
+
+    /**
+     * Returns the loader that's shared by all the view models that the
+     * given {@code creator} creates.
+     *
+     * @param creator Nonnull.
+     * @return Nonnull.
+     */
+    static ViewRecordLoader getInstance(ViewModelCreator creator) {
+        return CREATOR_LOADERS.computeIfAbsent(creator, c -> new ViewRecordLoader());
+    }
+
+    /**
+     * Asks for the record with the given {@code id}.
+     *
+     * @param id the record ID. May be {@code null}.
+     * @param type the expected record type.
+     * @param <T> the expected record type.
+     * @return the supplier of the record, which returns {@code null} if it
+     * doesn't exist or isn't of the expected type. Never {@code null}.
+     */
+    public <T> Supplier<T> load(UUID id, Class<T> type) {
+        return load(DEFAULT_SOURCE, id, type);
+    }
+
+    private <T> Supplier<T> load(Source source, UUID id, Class<T> type) {
+        if (id == null) {
+            return () -> null;
+        }
+
+        request(source, id);
+
+        return () -> cast(get(source, id), type);
+    }
+
+    /**
+     * Asks for the records with the given {@code ids}.
+     *
+     * @param ids the record IDs. May be {@code null}.
+     * @param type the expected record type.
+     * @param <T> the expected record type.
+     * @return the supplier of the records, in the same order as the IDs,
+     * without the ones that don't exist or aren't of the expected type.
+     * Never {@code null}.
+     */
+    public <T> Supplier<List<T>> loadAll(Collection<UUID> ids, Class<T> type) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections::emptyList;
+        }
+
+        List<UUID> idsCopy = new ArrayList<>(ids);
+
+        for (UUID id : idsCopy) {
+            request(DEFAULT_SOURCE, id);
+        }
+
+        return () -> {
+            List<T> result = new ArrayList<>();
+
+            for (UUID id : idsCopy) {
+                T record = cast(get(DEFAULT_SOURCE, id), type);
+
+                if (record != null) {
+                    result.add(record);
+                }
+            }
+
+            return result;
+        };
+    }
+
+    /**
+     * Asks for the record referenced by the field with the given
+     * {@code name} in the given {@code model}, without resolving the
+     * reference one at a time.
+     *
+     * @param model the model that contains the reference. May be {@code null}.
+     * @param name the field name.
+     * @param type the expected record type.
+     * @param <T> the expected record type.
+     * @return the supplier of the record. Never {@code null}.
+     */
+    public <T> Supplier<T> loadReference(Object model, String name, Class<T> type) {
+        State state = model != null ? State.getInstance(model) : null;
+        Object value = state != null ? state.getRawValues().get(name) : null;
+
+        if (value instanceof Map) {
+            return load(Source.of(state), ObjectUtils.to(UUID.class, ((Map<?, ?>) value).get("_ref")), type);
+
+        } else {
+
+            // Already resolved.
+            return () -> cast(value, type);
+        }
+    }
+
+    /**
+     * Asks for the records referenced by the list field with the given
+     * {@code name} in the given {@code model}, without resolving the
+     * references one at a time.
+     *
+     * @param model the model that contains the references. May be {@code null}.
+     * @param name the field name.
+     * @param type the expected record type.
+     * @param <T> the expected record type.
+     * @return the supplier of the records, without the ones that don't
+     * exist or aren't of the expected type. Never {@code null}.
+     */
+    public <T> Supplier<List<T>> loadReferences(Object model, String name, Class<T> type) {
+        State state = model != null ? State.getInstance(model) : null;
+        Object values = state != null ? state.getRawValues().get(name) : null;
+
+        if (!(values instanceof Iterable)) {
+            return Collections::emptyList;
+        }
+
+        Source source = Source.of(state);
+        List<Supplier<T>> suppliers = new ArrayList<>();
+
+        for (Object value : (Iterable<?>) values) {
+            if (value instanceof Map) {
+                suppliers.add(load(source, ObjectUtils.to(UUID.class, ((Map<?, ?>) value).get("_ref")), type));
+
+            } else {
+                suppliers.add(() -> cast(value, type));
+            }
+        }
+
+        return () -> {
+            List<T> result = new ArrayList<>();
+
+            for (Supplier<T> supplier : suppliers) {
+                T record = supplier.get();
+
+                if (record != null) {
+                    result.add(record);
+                }
+            }
+
+            return result;
+        };
+    }
+
+    /**
+     * Fetches all the records that have been asked for but not fetched yet.
+     */
+    public synchronized void flush() {
+        for (Map.Entry<Source, Batch> entry : batches.entrySet()) {
+            Source source = entry.getKey();
+            Batch batch = entry.getValue();
+
+            if (batch.pendingIds.isEmpty()) {
+                continue;
+            }
+
+            List<UUID> ids = new ArrayList<>(batch.pendingIds);
+
+            batch.pendingIds.clear();
+
+            for (UUID id : ids) {
+                batch.records.put(id, null);
+            }
+
+            for (Object record : find(source.database, source.resolveInvisible, ids)) {
+                batch.records.put(State.getInstance(record).getId(), record);
+            }
+        }
+    }
+
+    /**
+     * Finds the records with the given {@code ids} in the database.
+     *
+     * @param database the database to query. If {@code null}, the default
+     * database is used.
+     * @param resolveInvisible {@code true} if the invisible records should
+     * be included.
+     * @param ids the record IDs. Never {@code null} or empty.
+     * @return the records that exist. Never {@code null}.
+     */
+    protected List<?> find(Database database, boolean resolveInvisible, List<UUID> ids) {
+        Query<Object> query = Query
+                .fromAll()
+                .where("_id = ?", ids);
+
+        if (database != null) {
+            query.using(database);
+        }
+
+        if (resolveInvisible) {
+            query.resolveInvisible();
+        }
+
+        return query.selectAll();
+    }
+
+    private synchronized void request(Source source, UUID id) {
+        Batch batch = batches.computeIfAbsent(source, s -> new Batch());
+
+        if (!batch.records.containsKey(id)) {
+            batch.pendingIds.add(id);
+        }
+    }
+
+    private synchronized Object get(Source source, UUID id) {
+        Batch batch = batches.computeIfAbsent(source, s -> new Batch());
+
+        if (!batch.records.containsKey(id)) {
+            batch.pendingIds.add(id);
+            flush();
+        }
+
+        return batch.records.get(id);
+    }
+
+    private static <T> T cast(Object record, Class<T> type) {
+        return type.isInstance(record) ? type.cast(record) : null;
+    }
+
+    // Where the records are fetched from.
+    private static final class Source {
+
+        public final Database database;
+        public final boolean resolveInvisible;
+
+        public Source(Database database, boolean resolveInvisible) {
+            this.database = database;
+            this.resolveInvisible = resolveInvisible;
+        }
+
+        // Same settings that the given state would use to resolve its own
+        // references. The default database is left unset, so that the
+        // references share the batch with the plain loads.
+        public static Source of(State state) {
+            Database database = state.getDatabase();
+
+            return new Source(
+                    database != null && database != Database.Static.getDefault() ? database : null,
+                    state.isResolveInvisible());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+
+            } else if (other instanceof Source) {
+                Source otherSource = (Source) other;
+
+                return Objects.equals(database, otherSource.database)
+                        && resolveInvisible == otherSource.resolveInvisible;
+
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(database, resolveInvisible);
+        }
+    }
+
+    // Records asked for from a single source.
+    private static final class Batch {
+
+        public final Set<UUID> pendingIds = new LinkedHashSet<>();
+        public final Map<UUID, Object> records = new HashMap<>();
+    }
+}
@@ -5,6 +5,14 @@ import java.lang.annotation.Annotation;
 /**
  * Processes an annotation in order to create a ViewRenderer.
  *
+ * <p>By default, the renderer is created once per view class and then
+ * reused for every view of that class, from all threads, until the classes
+ * are redefined. So it must be thread-safe, and it shouldn't capture
+ * anything that can change afterwards, such as the current request or a
+ * setting. Processors that can't guarantee that should override
+ * {@link #isCacheable()} to return {@code false}, so that a new renderer is
+ * created for every view.</p>
+ *
  * @param <A> the annotation type to process.
  */
 public interface ViewRendererAnnotationProcessor<A extends Annotation> {
@@ -17,4 +25,14 @@ public interface ViewRendererAnnotationProcessor<A extends Annotation> {
      * @return the ViewRenderer created based on the annotation.
      */
     ViewRenderer createRenderer(Class<?> viewClass, A annotation);
+
+    /**
+     * Returns {@code true} if the renderers created by this processor can
+     * be cached and shared by all the views of the same class.
+     *
+     * @return {@code true} by default.
+     */
+    default boolean isCacheable() {
+        return true;
+    }
 }
@@ -9,6 +9,9 @@ import java.lang.annotation.Target;
 /**
  * Annotation for view types that specifies the ViewRenderer type that
  * should be used to render the view.
+ *
+ * <p>The renderer is created once per view class and shared by all the
+ * views of that class, from all threads, so it must be thread-safe.</p>
  */
 @Documented
 @Retention(RetentionPolicy.RUNTIME)
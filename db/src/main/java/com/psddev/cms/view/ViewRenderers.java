@@ -0,0 +1,261 @@
+package com.psddev.cms.view;
+
+import com.psddev.cms.db.PageFilter;
+import com.psddev.dari.db.ObjectType;
+import com.psddev.dari.db.State;
+import com.psddev.dari.util.CodeUtils;
+import com.psddev.dari.util.StringUtils;
+import com.psddev.dari.util.TypeDefinition;
+
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Resolves and caches the renderer for each view class, used by
+ * {@link ViewRenderer#createRenderer(Object)}, so that the renderers and
+ * their annotation processors are only created once.
+ *
+ * @see ViewRendererAnnotationProcessor#isCacheable()
+ */
+final class ViewRenderers {
+
+    // Includes the negative results.
+    private static final ConcurrentMap<Class<?>, Optional<ViewRenderer>> RENDERERS = new ConcurrentHashMap<>();
+
+    static {
+        CodeUtils.addRedefineClassesListener(classes -> RENDERERS.clear());
+    }
+
+    private ViewRenderers() {
+    }
+
+    /**
+     * Finds the renderer for the views of the given {@code viewType}.
+     *
+     * @param viewType Nonnull.
+     * @return Nullable.
+     */
+    static ViewRenderer find(Class<?> viewType) {
+        Optional<ViewRenderer> cached = RENDERERS.get(viewType);
+
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+
+        AtomicBoolean cacheable = new AtomicBoolean(true);
+        ViewRenderer renderer = create(viewType, cacheable);
+
+        if (cacheable.get()) {
+            RENDERERS.putIfAbsent(viewType, Optional.ofNullable(renderer));
+        }
+
+        return renderer;
+    }
+
+    // Clears the cacheable flag if any of the annotation processors opts out
+    // of caching.
+    private static ViewRenderer create(Class<?> viewType, AtomicBoolean cacheable) {
+
+        // we expect a list of size 1
+        List<ViewRenderer> renderers = new ArrayList<>();
+
+        for (Class<?> viewClass : ViewUtils.getAnnotatableClasses(viewType)) {
+
+            ViewRendererClass rendererAnnotation = viewClass.getAnnotation(ViewRendererClass.class);
+            if (rendererAnnotation != null) {
+                Class<? extends ViewRenderer> rendererClass = rendererAnnotation.value();
+
+                if (rendererClass != null) {
+
+                    try {
+                        ViewRenderer renderer = TypeDefinition.getInstance(rendererClass).newInstance();
+
+                        if (renderer != null) {
+                            renderers.add(renderer);
+                        }
+
+                    } catch (Exception e) {
+                        LoggerFactory.getLogger(ViewRenderer.class)
+                                .warn("Unable to create instance of renderer of type ["
+                                        + rendererClass.getName() + "]");
+                    }
+                }
+            }
+
+            // check for annotation processors.
+            for (Annotation viewAnnotation : viewClass.getAnnotations()) {
+
+                Class<?> annotationClass = viewAnnotation.annotationType();
+
+                ViewRendererAnnotationProcessorClass annotation = annotationClass.getAnnotation(
+                        ViewRendererAnnotationProcessorClass.class);
+
+                if (annotation != null) {
+
+                    Class<? extends ViewRendererAnnotationProcessor<? extends Annotation>> annotationProcessorClass = annotation.value();
+
+                    if (annotationProcessorClass != null) {
+
+                        @SuppressWarnings("unchecked")
+                        ViewRendererAnnotationProcessor<Annotation> annotationProcessor
+                                = (ViewRendererAnnotationProcessor<Annotation>) TypeDefinition.getInstance(annotationProcessorClass).newInstance();
+
+                        ViewRenderer renderer = annotationProcessor.createRenderer(viewType, viewAnnotation);
+
+                        if (!annotationProcessor.isCacheable()) {
+                            cacheable.set(false);
+                        }
+
+                        if (renderer != null) {
+                            renderers.add(renderer);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (!renderers.isEmpty()) {
+
+            if (renderers.size() == 1) {
+                ViewRenderer renderer = renderers.get(0);
+
+                // wrap the view renderer so that it always converts the view to a ViewMap
+                // before delegating to the actual renderer if it's not already a map.
+                return new ViewRenderer() {
+
+                    @Deprecated
+                    @Override
+                    public ViewOutput render(Object view) {
+                        return createViewOutput(
+                                view,
+                                () -> view instanceof Map
+                                        ? renderer.render(view)
+                                        : renderViewMap(new ViewMap(view), map -> renderer.render(map)));
+                    }
+
+                    @Override
+                    public ViewOutput render(Object view, ViewTemplateLoader loader) {
+                        return createViewOutput(
+                                view,
+                                () -> view instanceof Map
+                                        ? renderer.render(view, loader)
+                                        : renderViewMap(new ViewMap(view), map -> renderer.render(map, loader)));
+                    }
+
+                    // Cancels the getters that were submitted to be resolved
+                    // in parallel if the rendering fails.
+                    private ViewOutput renderViewMap(ViewMap viewMap, Function<ViewMap, ViewOutput> function) {
+                        try {
+                            return function.apply(viewMap);
+
+                        } catch (RuntimeException | Error error) {
+                            viewMap.close();
+                            throw error;
+                        }
+                    }
+
+                    private ViewOutput createViewOutput(Object view, Supplier<ViewOutput> viewOutputSupplier) {
+                        HttpServletRequest request = ViewResolverExecutor.getRequestOrNull();
+                        HttpServletResponse response = ViewResolverExecutor.getResponseOrNull();
+                        String contentType = response != null ? response.getContentType() : null;
+
+                        if (request == null
+                                || !PageFilter.Static.isInlineEditingAllContents(request)
+                                || (contentType != null
+                                    && !StringUtils.ensureEnd(contentType, ";").startsWith("text/html;"))) {
+
+                            return viewOutputSupplier.get();
+                        }
+
+                        if (view instanceof ViewMap) {
+                            view = ((ViewMap) view).toView();
+                        }
+
+                        if (!(view instanceof ViewModel)) {
+                            return viewOutputSupplier.get();
+                        }
+
+                        Object model = ((ViewModel) view).model;
+
+                        PageFilter.Static.pushObject(request, model);
+
+                        try {
+                            Map<String, String> map = new HashMap<>();
+                            Object concrete = PageFilter.Static.peekConcreteObject(request);
+
+                            if (concrete != null) {
+                                State state = State.getInstance(concrete);
+                                ObjectType stateType = state.getType();
+
+                                map.put("id", state.getId().toString());
+
+                                if (stateType != null) {
+                                    map.put("typeLabel", stateType.getLabel());
+                                }
+
+                                try {
+                                    map.put("label", state.getLabel());
+
+                                } catch (RuntimeException error) {
+                                    // Not a big deal if label can't be retrieved.
+                                }
+                            }
+
+                            ViewOutput output = viewOutputSupplier.get();
+
+                            // Push the object again while streaming, since
+                            // that's when the actual rendering happens.
+                            if (output instanceof StreamingViewOutput) {
+                                StreamingViewOutput streamingOutput = writer -> {
+                                    PageFilter.Static.pushObject(request, model);
+
+                                    try {
+                                        writer.write(PageFilter.createMarkerHtml("BrightspotCmsObjectBegin", map));
+                                        output.writeTo(writer);
+                                        writer.write(PageFilter.createMarkerHtml("BrightspotCmsObjectEnd", null));
+
+                                    } finally {
+                                        PageFilter.Static.popObject(request);
+                                    }
+                                };
+
+                                return streamingOutput;
+                            }
+
+                            String viewOutput = output.get();
+
+                            return () -> PageFilter.createMarkerHtml("BrightspotCmsObjectBegin", map)
+                                    + (viewOutput != null ? viewOutput : "")
+                                    + PageFilter.createMarkerHtml("BrightspotCmsObjectEnd", null);
+
+                        } finally {
+                            PageFilter.Static.popObject(request);
+
+                        }
+                    }
+                };
+
+            } else {
+                LoggerFactory.getLogger(ViewRenderer.class)
+                        .warn("Found multiple renderers for view of type [" + viewType.getName() + "]!");
+                return null;
+            }
+
+        } else {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.psddev.cms.view;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.psddev.dari.db.Database;
+import com.psddev.dari.util.PageContextFilter;
+import com.psddev.dari.util.Settings;
+
+/**
+ * Bounded executor for the view getters that are marked with
+ * {@link ResolveInParallel}, used by {@link ViewMap}.
+ *
+ * <p>The threads are started on first use, and should be stopped with
+ * {@link #shutdown()} when the web application is destroyed.</p>
+ *
+ * <p>The request and the response of the rendering thread, as returned by
+ * {@link PageContextFilter.Static}, are propagated to the background
+ * threads, and are available there through {@link #getRequestOrNull()} and
+ * {@link #getResponseOrNull()}.</p>
+ */
+public final class ViewResolverExecutor {
+
+    private static final ThreadLocal<HttpServletRequest> REQUEST = new ThreadLocal<>();
+    private static final ThreadLocal<HttpServletResponse> RESPONSE = new ThreadLocal<>();
+
+    private static volatile ExecutorService executor;
+
+    private ViewResolverExecutor() {
+    }
+
+    private static ExecutorService getExecutor() {
+        ExecutorService e = executor;
+
+        if (e == null) {
+            synchronized (ViewResolverExecutor.class) {
+                e = executor;
+
+                if (e == null) {
+                    e = createExecutor();
+                    executor = e;
+                }
+            }
+        }
+
+        return e;
+    }
+
+    private static ExecutorService createExecutor() {
+        int threadCount = Settings.getOrDefault(int.class, "brightspot/viewResolverThreadCount", Runtime.getRuntime().availableProcessors() * 2);
+        AtomicInteger threadIndex = new AtomicInteger();
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                threadCount,
+                threadCount,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Settings.getOrDefault(int.class, "brightspot/viewResolverQueueSize", 1000)),
+                runnable -> {
+                    Thread thread = new ResolverThread(runnable, "View Resolver #" + threadIndex.incrementAndGet());
+
+                    thread.setDaemon(true);
+                    return thread;
+                },
+
+                // Resolve in the calling thread when the executor is busy,
+                // or has just been shut down. Unlike CallerRunsPolicy, this
+                // also runs the task after a shutdown, so that its future
+                // always completes.
+                (runnable, rejecter) -> runnable.run());
+
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Stops all the background threads. The getters that are already
+     * running are allowed to finish, and any that are submitted afterwards
+     * start a new set of threads.
+     */
+    public static void shutdown() {
+        ExecutorService e;
+
+        synchronized (ViewResolverExecutor.class) {
+            e = executor;
+            executor = null;
+        }
+
+        if (e != null) {
+            e.shutdown();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the current thread is one of the background
+     * threads that resolve the getters in parallel.
+     */
+    public static boolean isResolverThread() {
+        return Thread.currentThread() instanceof ResolverThread;
+    }
+
+    /**
+     * Returns the current request, which, in a background thread, is a copy
+     * of the attributes and the parameters of the rendering thread's request
+     * at the time that the getter was submitted. The attributes that are
+     * set on the copy aren't visible to the other threads.
+     *
+     * @return May be {@code null}.
+     */
+    public static HttpServletRequest getRequestOrNull() {
+        HttpServletRequest request = REQUEST.get();
+
+        return request != null ? request : PageContextFilter.Static.getRequestOrNull();
+    }
+
+    /**
+     * Returns the current response, which, in a background thread, is the
+     * rendering thread's response. It must only be read there, since the
+     * rendering thread may be writing to it at the same time.
+     *
+     * @return May be {@code null}.
+     */
+    public static HttpServletResponse getResponseOrNull() {
+        HttpServletResponse response = RESPONSE.get();
+
+        return response != null ? response : PageContextFilter.Static.getResponseOrNull();
+    }
+
+    /**
+     * Submits the given {@code task} to run in a background thread with the
+     * current default database, request and response.
+     *
+     * <p>If the current thread is already a background thread, the task runs
+     * immediately instead, so that the nested views can't exhaust the threads
+     * while they wait for each other.</p>
+     *
+     * @param task Nonnull.
+     * @return Nonnull.
+     */
+    static <T> Future<T> submit(Callable<T> task) {
+        if (Thread.currentThread() instanceof ResolverThread) {
+            FutureTask<T> future = new FutureTask<>(task);
+
+            future.run();
+            return future;
+        }
+
+        // Everything that's read from the request happens here, in the
+        // rendering thread.
+        Database database = Database.Static.getDefault();
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        HttpServletRequest request = getRequestOrNull();
+        HttpServletRequest requestCopy = request != null ? new ViewResolverRequest(request) : null;
+        HttpServletResponse response = getResponseOrNull();
+
+        return getExecutor().submit(() -> {
+            Thread thread = Thread.currentThread();
+            ClassLoader oldClassLoader = thread.getContextClassLoader();
+            HttpServletRequest oldRequest = REQUEST.get();
+            HttpServletResponse oldResponse = RESPONSE.get();
+
+            thread.setContextClassLoader(classLoader);
+            Database.Static.overrideDefault(database);
+            REQUEST.set(requestCopy);
+            RESPONSE.set(response);
+
+            try {
+                return task.call();
+
+            } finally {
+                REQUEST.set(oldRequest);
+                RESPONSE.set(oldResponse);
+                Database.Static.restoreDefault();
+                thread.setContextClassLoader(oldClassLoader);
+            }
+        });
+    }
+
+    private static final class ResolverThread extends Thread {
+
+        public ResolverThread(Runnable runnable, String name) {
+            super(runnable, name);
+        }
+    }
+}
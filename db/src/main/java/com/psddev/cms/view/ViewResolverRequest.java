@@ -0,0 +1,91 @@
+package com.psddev.cms.view;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Copy of the attributes and the parameters of a request, taken in the
+ * rendering thread, that the getters resolved in parallel read instead of
+ * the request itself, used by {@link ViewResolverExecutor}.
+ *
+ * <p>The attributes that are set afterwards are only visible through this
+ * instance, so that the background threads never write to the request.</p>
+ */
+final class ViewResolverRequest extends HttpServletRequestWrapper {
+
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final Map<String, String[]> parameters;
+
+    /**
+     * @param request Nonnull. Must be the request of the current thread.
+     */
+    public ViewResolverRequest(HttpServletRequest request) {
+        super(request);
+
+        for (Enumeration<String> names = request.getAttributeNames(); names.hasMoreElements();) {
+            String name = names.nextElement();
+            Object value = request.getAttribute(name);
+
+            if (value != null) {
+                attributes.put(name, value);
+            }
+        }
+
+        this.parameters = Collections.unmodifiableMap(new LinkedHashMap<>(request.getParameterMap()));
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value != null) {
+            attributes.put(name, value);
+
+        } else {
+            attributes.remove(name);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters.get(name);
+
+        return values != null && values.length > 0 ? values[0] : null;
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return parameters;
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters.keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        String[] values = parameters.get(name);
+
+        return values != null ? values.clone() : null;
+    }
+}
@@ -27,4 +27,9 @@ class CurrentSiteProcessor implements ServletViewRequestAnnotationProcessor<Curr
     public Object getValue(HttpServletRequest request, String fieldName, CurrentSite annotation) {
         return PageFilter.Static.getSite(request);
     }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
 }
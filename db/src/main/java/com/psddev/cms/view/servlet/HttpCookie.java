@@ -42,4 +42,9 @@ class HttpCookieProcessor implements ServletViewRequestAnnotationProcessor<HttpC
 
         return null;
     }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
 }
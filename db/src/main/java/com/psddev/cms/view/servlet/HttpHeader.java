@@ -36,4 +36,9 @@ class HttpHeaderProcessor implements ServletViewRequestAnnotationProcessor<HttpH
 
         return Collections.list(request.getHeaders(headerName));
     }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
 }
@@ -25,4 +25,9 @@ class HttpMethodProcessor implements ServletViewRequestAnnotationProcessor<HttpM
     public Object getValue(HttpServletRequest request, String fieldName, HttpMethod annotation) {
         return request.getMethod();
     }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
 }
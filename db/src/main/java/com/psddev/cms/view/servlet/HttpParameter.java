@@ -39,4 +39,9 @@ class HttpParameterProcessor implements ServletViewRequestAnnotationProcessor<Ht
 
         return parameterValues != null ? Arrays.asList(parameterValues) : Collections.emptyList();
     }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
 }
@@ -35,4 +35,9 @@ class HttpRequestAttributeProcessor implements ServletViewRequestAnnotationProce
 
         return request.getAttribute(attributeName);
     }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
 }
@@ -24,4 +24,9 @@ class HttpServletPathProcessor implements ServletViewRequestAnnotationProcessor<
     public Object getValue(HttpServletRequest request, String fieldName, HttpServletPath annotation) {
         return request.getServletPath();
     }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
 }
@@ -45,4 +45,9 @@ class HttpSignedCookieProcessor implements ServletViewRequestAnnotationProcessor
 
         return value;
     }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
 }
@@ -49,4 +49,9 @@ class HttpStorageItemParameterProcessor implements ServletViewRequestAnnotationP
             return null;
         }
     }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
 }
@@ -27,4 +27,9 @@ class MainObjectProcessor implements ServletViewRequestAnnotationProcessor<MainO
     public Object getValue(HttpServletRequest request, String fieldName, MainObject annotation) {
         return PageFilter.Static.getMainObject(request);
     }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
 }
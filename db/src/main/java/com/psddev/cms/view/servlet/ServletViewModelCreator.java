@@ -1,16 +1,27 @@
 package com.psddev.cms.view.servlet;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.slf4j.LoggerFactory;
 
 import com.psddev.cms.view.ViewModel;
+import com.psddev.cms.view.ViewRecordLoader;
+import com.psddev.cms.view.ViewResolverExecutor;
+import com.psddev.dari.util.CodeUtils;
 import com.psddev.dari.util.Converter;
 import com.psddev.dari.util.TypeDefinition;
 
@@ -20,10 +31,48 @@ public class ServletViewModelCreator extends ViewModel.DefaultCreator {
         CONVERTER.putAllStandardFunctions();
     }
 
+    private static final String RECORD_LOADER_ATTRIBUTE = ServletViewModelCreator.class.getName() + ".recordLoader";
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    // Shared by all the view model classes. Only the processors that are
+    // shareable are kept here.
+    private static final ConcurrentMap<Class<?>, ServletViewRequestAnnotationProcessor<?>> PROCESSORS = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<Class<?>, List<Injection>> INJECTION_PLANS = new ConcurrentHashMap<>();
+
+    static {
+        CodeUtils.addRedefineClassesListener(classes -> {
+            PROCESSORS.clear();
+            INJECTION_PLANS.clear();
+        });
+    }
+
     private HttpServletRequest request;
+    private final ViewRecordLoader recordLoader;
 
     public ServletViewModelCreator(HttpServletRequest request) {
         this.request = request;
+
+        // Looked up here, in the rendering thread, since the view models may
+        // be created by the getters that are resolved in parallel.
+        ViewRecordLoader loader = (ViewRecordLoader) request.getAttribute(RECORD_LOADER_ATTRIBUTE);
+
+        if (loader == null) {
+            loader = new ViewRecordLoader();
+            request.setAttribute(RECORD_LOADER_ATTRIBUTE, loader);
+        }
+
+        this.recordLoader = loader;
+    }
+
+    /**
+     * Returns the record loader shared by all the view models in the
+     * current request.
+     */
+    @Override
+    public ViewRecordLoader getRecordLoader() {
+        return recordLoader;
     }
 
     @Override
@@ -37,64 +86,154 @@ public class ServletViewModelCreator extends ViewModel.DefaultCreator {
             return;
         }
 
+        // In a background thread, the request is only read through the copy
+        // that was taken in the rendering thread.
+        HttpServletRequest request = ViewResolverExecutor.isResolverThread()
+                ? ViewResolverExecutor.getRequestOrNull()
+                : null;
+
+        if (request == null) {
+            request = this.request;
+        }
+
         try {
-            TypeDefinition<? extends ViewModel> viewModelDefinition = TypeDefinition.getInstance(viewModel.getClass());
+            for (Injection injection : INJECTION_PLANS.computeIfAbsent(viewModel.getClass(), ServletViewModelCreator::createInjectionPlan)) {
+                injection.inject(request, viewModel);
+            }
 
-            for (Map.Entry<String, List<Field>> entry : viewModelDefinition.getAllSerializableFields().entrySet()) {
+        } catch (RuntimeException e) {
+            LoggerFactory.getLogger(ServletViewModelCreator.class)
+                    .warn("Failed to update view model of type ["
+                            + viewModel.getClass() + "] with all request data. Cause: " + e.getMessage(), e);
+        }
+    }
+
+    // Finds all the fields that are populated by an annotation processor.
+    private static List<Injection> createInjectionPlan(Class<?> viewModelClass) {
+        List<Injection> plan = new ArrayList<>();
+        TypeDefinition<?> viewModelDefinition = TypeDefinition.getInstance(viewModelClass);
 
-                Field field = entry.getValue().get(entry.getValue().size() - 1);
-                String fieldName = field.getName();
+        for (Map.Entry<String, List<Field>> entry : viewModelDefinition.getAllSerializableFields().entrySet()) {
 
-                Object fieldValue = null;
+            Field field = entry.getValue().get(entry.getValue().size() - 1);
 
-                // check for annotation processors.
-                for (Annotation viewModelAnnotation : field.getAnnotations()) {
+            // check for annotation processors.
+            for (Annotation viewModelAnnotation : field.getAnnotations()) {
 
-                    Class<?> annotationClass = viewModelAnnotation.annotationType();
+                Class<?> annotationClass = viewModelAnnotation.annotationType();
 
-                    ServletViewRequestAnnotationProcessorClass annotation = annotationClass.getAnnotation(
-                            ServletViewRequestAnnotationProcessorClass.class);
+                ServletViewRequestAnnotationProcessorClass annotation = annotationClass.getAnnotation(
+                        ServletViewRequestAnnotationProcessorClass.class);
 
-                    if (annotation != null) {
+                if (annotation != null) {
 
-                        Class<? extends ServletViewRequestAnnotationProcessor<? extends Annotation>> annotationProcessorClass = annotation.value();
+                    Class<? extends ServletViewRequestAnnotationProcessor<? extends Annotation>> annotationProcessorClass = annotation.value();
 
-                        if (annotationProcessorClass != null) {
+                    if (annotationProcessorClass != null) {
 
+                        ServletViewRequestAnnotationProcessor<Annotation> processor = createProcessor(annotationProcessorClass);
+                        Supplier<ServletViewRequestAnnotationProcessor<Annotation>> annotationProcessor;
+
+                        if (processor.isShareable()) {
                             @SuppressWarnings("unchecked")
-                            ServletViewRequestAnnotationProcessor<Annotation> annotationProcessor
-                                    = (ServletViewRequestAnnotationProcessor<Annotation>) TypeDefinition.getInstance(annotationProcessorClass).newInstance();
+                            ServletViewRequestAnnotationProcessor<Annotation> shared
+                                    = (ServletViewRequestAnnotationProcessor<Annotation>) PROCESSORS.computeIfAbsent(
+                                            annotationProcessorClass,
+                                            c -> processor);
+
+                            annotationProcessor = () -> shared;
+
+                        } else {
 
-                            fieldValue = annotationProcessor.getValue(request, fieldName, viewModelAnnotation);
-                            break;
+                            // The processors that may keep state get a new
+                            // instance every time, as before.
+                            annotationProcessor = () -> createProcessor(annotationProcessorClass);
                         }
+
+                        plan.add(new Injection(field, annotationProcessor, viewModelAnnotation));
+                        break;
                     }
                 }
+            }
+        }
 
-                if (fieldValue != null) {
-                    try {
-
-                        // Handle the case where the field value is a collection but the field type is not.
-                        if (fieldValue instanceof Collection && !Collection.class.isAssignableFrom(field.getType())) {
-                            if (!((Collection<?>) fieldValue).isEmpty()) {
-                                // get the first value from the collection
-                                fieldValue = ((Collection<?>) fieldValue).iterator().next();
-                            } else {
-                                fieldValue = null;
-                            }
-                        }
+        return plan;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServletViewRequestAnnotationProcessor<Annotation> createProcessor(Class<?> processorClass) {
+        return (ServletViewRequestAnnotationProcessor<Annotation>) TypeDefinition.getInstance(processorClass).newInstance();
+    }
+
+    /**
+     * Populates a view model field with the value produced by an annotation
+     * processor.
+     */
+    private static final class Injection {
+
+        private final Field field;
+        private final String fieldName;
+        private final boolean collectionType;
+        private final Type genericType;
+        private final MethodHandle setter;
+        private final Supplier<ServletViewRequestAnnotationProcessor<Annotation>> processor;
+        private final Annotation annotation;
+
+        public Injection(Field field, Supplier<ServletViewRequestAnnotationProcessor<Annotation>> processor, Annotation annotation) {
+            this.field = field;
+            this.fieldName = field.getName();
+            this.collectionType = Collection.class.isAssignableFrom(field.getType());
+            this.genericType = field.getGenericType();
+            this.setter = unreflectSetter(field);
+            this.processor = processor;
+            this.annotation = annotation;
+        }
+
+        // Returns null if the field can't be set through a handle (for
+        // example, because it's final), so that it's set reflectively
+        // instead.
+        private static MethodHandle unreflectSetter(Field field) {
+            try {
+                field.setAccessible(true);
+                return MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+
+            } catch (IllegalAccessException | RuntimeException error) {
+                return null;
+            }
+        }
+
+        public void inject(HttpServletRequest request, Object viewModel) {
+            Object fieldValue = processor.get().getValue(request, fieldName, annotation);
 
-                        field.set(viewModel, CONVERTER.convert(field.getGenericType(), fieldValue));
-                    } catch (IllegalAccessException ex) {
-                        throw new IllegalStateException(ex);
+            if (fieldValue != null) {
+
+                // Handle the case where the field value is a collection but the field type is not.
+                if (fieldValue instanceof Collection && !collectionType) {
+                    if (!((Collection<?>) fieldValue).isEmpty()) {
+                        // get the first value from the collection
+                        fieldValue = ((Collection<?>) fieldValue).iterator().next();
+                    } else {
+                        fieldValue = null;
                     }
                 }
-            }
 
-        } catch (RuntimeException e) {
-            LoggerFactory.getLogger(ServletViewModelCreator.class)
-                    .warn("Failed to update view model of type ["
-                            + viewModel.getClass() + "] with all request data. Cause: " + e.getMessage(), e);
+                Object convertedValue = CONVERTER.convert(genericType, fieldValue);
+
+                try {
+                    if (setter != null) {
+                        setter.invokeExact(viewModel, convertedValue);
+
+                    } else {
+                        field.set(viewModel, convertedValue);
+                    }
+
+                } catch (RuntimeException | Error error) {
+                    throw error;
+
+                } catch (Throwable error) {
+                    throw new IllegalStateException(error);
+                }
+            }
         }
     }
 }
@@ -7,6 +7,12 @@ import javax.servlet.http.HttpServletRequest;
 /**
  * Processes an annotation in order to produce a value that is populated on a
  * view request field.
+ *
+ * <p>By default, a new processor is created for every field that it
+ * populates. Processors that are stateless can override
+ * {@link #isShareable()} to return {@code true}, so that they're created
+ * once and shared by all requests and threads instead.</p>
+ *
  * @param <A>
  */
 public interface ServletViewRequestAnnotationProcessor<A extends Annotation> {
@@ -21,4 +27,16 @@ public interface ServletViewRequestAnnotationProcessor<A extends Annotation> {
      * @return the value that will be populated in the field.
      */
     Object getValue(HttpServletRequest request, String fieldName, A annotation);
+
+    /**
+     * Returns {@code true} if this processor can be created once and then
+     * shared by all requests and threads, which requires it to be
+     * thread-safe and to not keep any state between the calls to
+     * {@link #getValue}.
+     *
+     * @return {@code false} by default.
+     */
+    default boolean isShareable() {
+        return false;
+    }
 }
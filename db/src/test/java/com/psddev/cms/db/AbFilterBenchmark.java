@@ -0,0 +1,131 @@
+package com.psddev.cms.db;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Compares the A/B bucketing that's used when
+ * {@link AbFilter#HASH_BUCKETING_SETTING} is enabled with the legacy
+ * MD5-based bucketing and its per-request cache, as used by
+ * {@link AbDatabase}, in time and in bytes allocated per field read.
+ *
+ * <p>Each operation simulates one request that reads every field of every
+ * object a few times, as a page that reads the same objects in multiple
+ * places would. The allocation is measured with
+ * {@code com.sun.management.ThreadMXBean}, so it's only reported on the
+ * JVMs that support it.</p>
+ *
+ * <p>This isn't a unit test, so it isn't run by the build. Run its
+ * {@link #main} from the test classpath, for example:</p>
+ *
+ * <blockquote><pre>
+ *     mvn -pl db test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.psddev.cms.db.AbFilterBenchmark
+ * </pre></blockquote>
+ */
+public class AbFilterBenchmark {
+
+    private static final int OBJECT_COUNT = 50;
+    private static final String[] FIELD_NAMES = { "title", "headline", "image", "callToAction" };
+    private static final int READS_PER_FIELD = 3;
+    private static final int READS_PER_OPERATION = OBJECT_COUNT * FIELD_NAMES.length * READS_PER_FIELD;
+    private static final int WARMUP_ITERATIONS = 2000;
+    private static final int MEASURED_ITERATIONS = 2000;
+    private static final int ROUNDS = 5;
+
+    private static final String SEED = UUID.randomUUID().toString();
+    private static final UUID[] IDS = new UUID[OBJECT_COUNT];
+
+    static {
+        for (int i = 0; i < OBJECT_COUNT; ++ i) {
+            IDS[i] = UUID.randomUUID();
+        }
+    }
+
+    public static void main(String[] arguments) {
+        for (int round = 1; round <= ROUNDS; ++ round) {
+            System.out.printf("Round %d%n", round);
+            measure("Hash bucketing", AbFilterBenchmark::readHashed);
+            measure("MD5 with cache (legacy)", AbFilterBenchmark::readLegacy);
+        }
+    }
+
+    // Same as AbDatabase#random with the hash bucketing enabled. The seed
+    // hash is computed once per request by AbFilter.
+    private static double readHashed() {
+        long seedHash = AbFilter.Static.hash(SEED);
+        double sum = 0.0;
+
+        for (int r = 0; r < READS_PER_FIELD; ++ r) {
+            for (UUID id : IDS) {
+                for (String fieldName : FIELD_NAMES) {
+                    sum += AbFilter.Static.hashRandom(seedHash, id, fieldName);
+                }
+            }
+        }
+
+        return sum;
+    }
+
+    // Same as AbDatabase#random with the hash bucketing disabled, including
+    // the cache that lives as long as the request.
+    private static double readLegacy() {
+        Map<UUID, Map<String, Double>> randoms = new ConcurrentHashMap<>();
+        double sum = 0.0;
+
+        for (int r = 0; r < READS_PER_FIELD; ++ r) {
+            for (UUID id : IDS) {
+                for (String fieldName : FIELD_NAMES) {
+                    sum += randoms
+                            .computeIfAbsent(id, i -> new ConcurrentHashMap<>())
+                            .computeIfAbsent(fieldName, f -> AbFilter.Static.md5Random(SEED, id, f));
+                }
+            }
+        }
+
+        return sum;
+    }
+
+    private static void measure(String name, Supplier<Double> operation) {
+        double sink = 0.0;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; ++ i) {
+            sink += operation.get();
+        }
+
+        long startBytes = getAllocatedBytes();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < MEASURED_ITERATIONS; ++ i) {
+            sink += operation.get();
+        }
+
+        long reads = (long) MEASURED_ITERATIONS * READS_PER_OPERATION;
+        double nanosPerRead = (System.nanoTime() - start) / (double) reads;
+        long endBytes = getAllocatedBytes();
+
+        if (startBytes >= 0 && endBytes >= 0) {
+            System.out.printf("  %-24s %,10.1f ns/read %,10.1f bytes/read (%f)%n", name, nanosPerRead, (endBytes - startBytes) / (double) reads, sink);
+
+        } else {
+            System.out.printf("  %-24s %,10.1f ns/read (%f)%n", name, nanosPerRead, sink);
+        }
+    }
+
+    // Returns -1 if the JVM can't measure the allocation.
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return -1L;
+    }
+}
@@ -0,0 +1,139 @@
+package com.psddev.cms.db;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import com.psddev.dari.db.State;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AbFilterTest {
+
+    private static final int BUCKETS = 10;
+    private static final int SAMPLES = 10000;
+
+    @Mock
+    HttpServletRequest request;
+
+    @Mock
+    State state;
+
+    Map<String, Object> attributes;
+
+    @Before
+    public void before() {
+        attributes = new HashMap<>();
+
+        doAnswer(invocation -> attributes.get(invocation.getArguments()[0])).when(request).getAttribute(anyString());
+        doAnswer(invocation -> attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1])).when(request).setAttribute(anyString(), any());
+
+        attributes.put(AbFilter.class.getName() + ".seed", "visitor");
+        when(state.getId()).thenReturn(new UUID(1L, 2L));
+    }
+
+    private static void assertUniform(int[] counts) {
+        int expected = SAMPLES / counts.length;
+
+        // About five standard deviations for a binomial with p = 0.1.
+        int tolerance = (int) (5 * Math.sqrt(SAMPLES * 0.1 * 0.9));
+
+        for (int count : counts) {
+            assertTrue("Count " + count + " too far from " + expected, Math.abs(count - expected) <= tolerance);
+        }
+    }
+
+    private static int bucket(double random) {
+        assertTrue(random >= 0.0 && random < 1.0);
+        return (int) (random * BUCKETS);
+    }
+
+    @Test
+    public void hashRandomStable() {
+        UUID id = UUID.randomUUID();
+        long seedHash = AbFilter.Static.hash("visitor");
+
+        assertEquals(seedHash, AbFilter.Static.hash("visitor"));
+        assertEquals(
+                AbFilter.Static.hashRandom(seedHash, id, "field"),
+                AbFilter.Static.hashRandom(AbFilter.Static.hash("visitor"), id, "field"),
+                0.0);
+    }
+
+    @Test
+    public void hashRandomVaries() {
+        UUID id = new UUID(1L, 2L);
+        long seedHash = AbFilter.Static.hash("visitor");
+        double random = AbFilter.Static.hashRandom(seedHash, id, "field");
+
+        assertNotEquals(random, AbFilter.Static.hashRandom(AbFilter.Static.hash("visitor2"), id, "field"), 0.0);
+        assertNotEquals(random, AbFilter.Static.hashRandom(seedHash, new UUID(1L, 3L), "field"), 0.0);
+        assertNotEquals(random, AbFilter.Static.hashRandom(seedHash, new UUID(2L, 2L), "field"), 0.0);
+        assertNotEquals(random, AbFilter.Static.hashRandom(seedHash, id, "field2"), 0.0);
+        assertNotEquals(random, AbFilter.Static.hashRandom(seedHash, id, null), 0.0);
+    }
+
+    @Test
+    public void hashRandomDistributedAcrossVisitors() {
+        UUID id = new UUID(1L, 2L);
+        Random random = new Random(0L);
+        int[] counts = new int[BUCKETS];
+
+        for (int i = 0; i < SAMPLES; ++ i) {
+            String seed = new UUID(random.nextLong(), random.nextLong()).toString();
+
+            ++ counts[bucket(AbFilter.Static.hashRandom(AbFilter.Static.hash(seed), id, "field"))];
+        }
+
+        assertUniform(counts);
+    }
+
+    @Test
+    public void hashRandomDistributedAcrossObjects() {
+        long seedHash = AbFilter.Static.hash("visitor");
+        Random random = new Random(0L);
+        int[] counts = new int[BUCKETS];
+
+        for (int i = 0; i < SAMPLES; ++ i) {
+            UUID id = new UUID(random.nextLong(), random.nextLong());
+
+            ++ counts[bucket(AbFilter.Static.hashRandom(seedHash, id, "field"))];
+        }
+
+        assertUniform(counts);
+    }
+
+    @Test
+    public void hashRandomDistributedAcrossSequentialSeeds() {
+        UUID id = new UUID(1L, 2L);
+        int[] counts = new int[BUCKETS];
+
+        for (int i = 0; i < SAMPLES; ++ i) {
+            ++ counts[bucket(AbFilter.Static.hashRandom(AbFilter.Static.hash("visitor" + i), id, "field"))];
+        }
+
+        assertUniform(counts);
+    }
+
+    @Test
+    public void randomStable() {
+        double random = AbFilter.Static.random(request, state, "field");
+
+        assertTrue(random >= 0.0 && random < 1.0);
+        assertEquals(random, AbFilter.Static.random(request, state, "field"), 0.0);
+    }
+}
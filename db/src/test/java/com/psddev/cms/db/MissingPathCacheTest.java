@@ -0,0 +1,125 @@
+package com.psddev.cms.db;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import com.psddev.dari.db.Database;
+import com.psddev.dari.db.State;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MissingPathCacheTest {
+
+    @Mock
+    Database database;
+
+    MissingPathCache cache;
+
+    @Before
+    public void before() {
+        cache = MissingPathCache.getInstance();
+        cache.register(database);
+    }
+
+    @After
+    public void after() {
+        cache.unregister();
+    }
+
+    private static State createState(String... paths) {
+        State state = mock(State.class);
+        Directory.ObjectModification directoryData = mock(Directory.ObjectModification.class);
+
+        when(state.as(Directory.ObjectModification.class)).thenReturn(directoryData);
+        when(directoryData.getRawPaths()).thenReturn(Arrays.asList(paths));
+        return state;
+    }
+
+    private static Site createSite() {
+        Site site = mock(Site.class);
+
+        when(site.getId()).thenReturn(UUID.randomUUID());
+        return site;
+    }
+
+    @Test
+    public void registerAddsUpdateNotifier() {
+        verify(database).addUpdateNotifier(cache);
+    }
+
+    @Test
+    public void putMissing() {
+        assertFalse(cache.isMissing(null, "/missing"));
+
+        cache.putMissing(null, "/missing");
+
+        assertTrue(cache.isMissing(null, "/missing"));
+        assertFalse(cache.isMissing(null, "/other"));
+    }
+
+    @Test
+    public void trailingSlashIsSignificant() {
+        cache.putMissing(null, "/missing");
+
+        assertFalse(cache.isMissing(null, "/missing/"));
+    }
+
+    @Test
+    public void keyedBySite() {
+        Site site = createSite();
+
+        cache.putMissing(site, "/missing");
+
+        assertTrue(cache.isMissing(site, "/missing"));
+        assertFalse(cache.isMissing(createSite(), "/missing"));
+        assertFalse(cache.isMissing(null, "/missing"));
+    }
+
+    @Test
+    public void directoryUpdateInvalidates() {
+        cache.putMissing(null, "/missing");
+        cache.onUpdate(mock(Directory.class));
+
+        assertFalse(cache.isMissing(null, "/missing"));
+    }
+
+    @Test
+    public void objectWithPathsUpdateInvalidates() {
+        cache.putMissing(null, "/missing");
+        cache.onUpdate(createState("/missing"));
+
+        assertFalse(cache.isMissing(null, "/missing"));
+    }
+
+    @Test
+    public void objectWithoutPathsUpdateKeeps() {
+        cache.putMissing(null, "/missing");
+        cache.onUpdate(createState());
+
+        assertTrue(cache.isMissing(null, "/missing"));
+    }
+
+    @Test
+    public void disabledWhenUnregistered() {
+        cache.putMissing(null, "/missing");
+        cache.unregister();
+
+        verify(database).removeUpdateNotifier(cache);
+        assertFalse(cache.isMissing(null, "/missing"));
+
+        cache.putMissing(null, "/missing");
+        cache.register(database);
+
+        assertFalse(cache.isMissing(null, "/missing"));
+    }
+}
@@ -0,0 +1,290 @@
+package com.psddev.cms.db;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import com.psddev.dari.db.Database;
+import com.psddev.dari.db.State;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PageOutputCacheTest {
+
+    @Mock
+    Database database;
+
+    @Mock
+    HttpServletRequest request;
+
+    @Mock
+    HttpServletResponse response;
+
+    PageOutputCache cache;
+
+    @Before
+    public void before() throws IOException {
+        Map<String, Object> attributes = new HashMap<>();
+
+        doAnswer(invocation -> attributes.get(invocation.getArguments()[0])).when(request).getAttribute(anyString());
+        doAnswer(invocation -> attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1])).when(request).setAttribute(anyString(), any());
+
+        attributes.put(PageFilter.SITE_CHECKED_ATTRIBUTE, Boolean.TRUE);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getServletPath()).thenReturn("/article");
+
+        when(response.getStatus()).thenReturn(HttpServletResponse.SC_OK);
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+
+        cache = PageOutputCache.getInstance();
+        cache.register(database, 60000L, 100L, Collections.singletonList("Accept-Language"));
+    }
+
+    @After
+    public void after() {
+        cache.unregister();
+    }
+
+    private PageOutputCache.CapturingResponse render(String output) throws IOException {
+        PageOutputCache.CapturingResponse capturing = new PageOutputCache.CapturingResponse(response);
+
+        capturing.getWriter().write(output);
+        capturing.getWriter().flush();
+        return capturing;
+    }
+
+    private static State createState() {
+        State state = mock(State.class);
+
+        when(state.getId()).thenReturn(UUID.randomUUID());
+        return state;
+    }
+
+    @Test
+    public void registerAddsUpdateNotifier() {
+        verify(database).addUpdateNotifier(cache);
+    }
+
+    @Test
+    public void keyIsStable() {
+        String key = cache.createKey(request, null);
+
+        assertNotNull(key);
+        assertEquals(key, cache.createKey(request, null));
+    }
+
+    @Test
+    public void keyVariesByPath() {
+        String key = cache.createKey(request, null);
+
+        when(request.getServletPath()).thenReturn("/other");
+        assertNotEquals(key, cache.createKey(request, null));
+    }
+
+    @Test
+    public void keyVariesByHeader() {
+        when(request.getHeader("Accept-Language")).thenReturn("en");
+        String english = cache.createKey(request, null);
+
+        when(request.getHeader("Accept-Language")).thenReturn("fr");
+        assertNotEquals(english, cache.createKey(request, null));
+    }
+
+    @Test
+    public void keyVariesByViewType() {
+        String key = cache.createKey(request, null);
+
+        when(request.getParameter(PageFilter.VIEW_TYPE_PARAMETER)).thenReturn("amp");
+        assertNotEquals(key, cache.createKey(request, null));
+    }
+
+    @Test
+    public void noKeyForPost() {
+        when(request.getMethod()).thenReturn("POST");
+        assertNull(cache.createKey(request, null));
+    }
+
+    @Test
+    public void noKeyForQueryString() {
+        when(request.getQueryString()).thenReturn("a=b");
+        assertNull(cache.createKey(request, null));
+    }
+
+    @Test
+    public void noKeyWhenDisabled() {
+        cache.unregister();
+        assertNull(cache.createKey(request, null));
+    }
+
+    @Test
+    public void putAndGet() throws IOException {
+        String key = cache.createKey(request, null);
+        PageDependencies dependencies = PageDependencies.start(request);
+        PageOutputCache.CapturingResponse capturing = render("<html></html>");
+
+        capturing.setContentType("text/html");
+        capturing.setHeader("X-Test", "a");
+        capturing.addHeader("X-Test", "b");
+        capturing.setDateHeader("Expires", 0L);
+        capturing.setIntHeader("X-Count", 5);
+        cache.put(key, capturing, dependencies);
+
+        PageOutputCache.Entry entry = cache.get(key);
+        assertNotNull(entry);
+
+        HttpServletResponse hitResponse = mock(HttpServletResponse.class);
+        StringWriter hitOutput = new StringWriter();
+
+        when(hitResponse.getWriter()).thenReturn(new PrintWriter(hitOutput, true));
+        entry.writeTo(hitResponse);
+
+        verify(hitResponse).addHeader("X-Test", "a");
+        verify(hitResponse).addHeader("X-Test", "b");
+        verify(hitResponse).addHeader("Expires", "Thu, 1 Jan 1970 00:00:00 GMT");
+        verify(hitResponse).addHeader("X-Count", "5");
+        verify(hitResponse).setHeader("Brightspot-Page-Cache", "hit");
+        hitResponse.getWriter().flush();
+        assertEquals("<html></html>", hitOutput.toString());
+    }
+
+    @Test
+    public void validatorFromEtag() throws IOException {
+        String key = cache.createKey(request, null);
+        PageOutputCache.CapturingResponse capturing = render("output");
+
+        capturing.setHeader("ETag", "\"abc\"");
+        capturing.setDateHeader("Last-Modified", 1000L);
+        cache.put(key, capturing, PageDependencies.start(request));
+
+        PageValidator validator = cache.get(key).getValidator();
+
+        assertEquals("\"abc\"", validator.getEtag());
+        assertEquals(1000L, validator.getLastModified());
+    }
+
+    @Test
+    public void notCachedWithCookie() throws IOException {
+        String key = cache.createKey(request, null);
+        PageOutputCache.CapturingResponse capturing = render("output");
+
+        capturing.setHeader("Set-Cookie", "a=b");
+        cache.put(key, capturing, PageDependencies.start(request));
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void notCachedWithPrivateCacheControl() throws IOException {
+        String key = cache.createKey(request, null);
+
+        when(response.getHeaders("Cache-Control")).thenReturn(Arrays.asList("private, max-age=0"));
+        cache.put(key, render("output"), PageDependencies.start(request));
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void notCachedOnError() throws IOException {
+        String key = cache.createKey(request, null);
+
+        when(response.getStatus()).thenReturn(HttpServletResponse.SC_NOT_FOUND);
+        cache.put(key, render("output"), PageDependencies.start(request));
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void notCachedWhenPersonalized() throws IOException {
+        String key = cache.createKey(request, null);
+        PageDependencies dependencies = PageDependencies.start(request);
+
+        dependencies.setPersonalized();
+        cache.put(key, render("output"), dependencies);
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void updateEvictsDependents() throws IOException {
+        State dependency = createState();
+        State other = createState();
+
+        String key = cache.createKey(request, null);
+        PageDependencies dependencies = PageDependencies.start(request);
+
+        dependencies.add(dependency);
+        cache.put(key, render("output"), dependencies);
+
+        cache.onUpdate(other);
+        assertNotNull(cache.get(key));
+
+        cache.onUpdate(dependency);
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void updateWhileRenderingDiscardsPut() throws IOException {
+        State dependency = createState();
+
+        String key = cache.createKey(request, null);
+        PageDependencies dependencies = PageDependencies.start(request);
+
+        dependencies.add(dependency);
+        cache.onUpdate(dependency);
+        cache.put(key, render("output"), dependencies);
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void updateBeforeRenderingKeepsPut() throws IOException, InterruptedException {
+        State dependency = createState();
+
+        cache.onUpdate(dependency);
+
+        // Makes sure that nanoTime advances.
+        Thread.sleep(1);
+
+        String key = cache.createKey(request, null);
+        PageDependencies dependencies = PageDependencies.start(request);
+
+        dependencies.add(dependency);
+        cache.put(key, render("output"), dependencies);
+
+        assertNotNull(cache.get(key));
+    }
+
+    @Test
+    public void unregisterClears() throws IOException {
+        String key = cache.createKey(request, null);
+
+        cache.put(key, render("output"), PageDependencies.start(request));
+        cache.unregister();
+
+        verify(database).removeUpdateNotifier(cache);
+        assertNull(cache.get(key));
+    }
+}
@@ -0,0 +1,247 @@
+package com.psddev.cms.db;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import com.psddev.dari.db.State;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PageValidatorTest {
+
+    private static final String ETAG = "\"abc\"";
+    private static final long LAST_MODIFIED = 1500000000000L;
+
+    @Mock
+    HttpServletRequest request;
+
+    @Mock
+    HttpServletResponse response;
+
+    PageValidator validator;
+
+    @Before
+    public void before() {
+        validator = new PageValidator(ETAG, LAST_MODIFIED);
+    }
+
+    // Backs the request attributes with a map, so that PageDependencies can
+    // be stored in it.
+    private PageDependencies startDependencies() {
+        Map<String, Object> attributes = new HashMap<>();
+
+        doAnswer(invocation -> attributes.get(invocation.getArguments()[0])).when(request).getAttribute(anyString());
+        doAnswer(invocation -> attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1])).when(request).setAttribute(anyString(), any());
+
+        return PageDependencies.start(request);
+    }
+
+    @Test
+    public void unconditional() {
+        assertFalse(validator.isNotModified(request));
+    }
+
+    @Test
+    public void ifNoneMatch() {
+        when(request.getHeader("If-None-Match")).thenReturn(ETAG);
+        assertTrue(validator.isNotModified(request));
+    }
+
+    @Test
+    public void ifNoneMatchList() {
+        when(request.getHeader("If-None-Match")).thenReturn("\"other\", " + ETAG);
+        assertTrue(validator.isNotModified(request));
+    }
+
+    @Test
+    public void ifNoneMatchWeak() {
+        when(request.getHeader("If-None-Match")).thenReturn("W/" + ETAG);
+        assertTrue(validator.isNotModified(request));
+    }
+
+    @Test
+    public void ifNoneMatchAny() {
+        when(request.getHeader("If-None-Match")).thenReturn("*");
+        assertTrue(validator.isNotModified(request));
+    }
+
+    @Test
+    public void ifNoneMatchMismatchIgnoresIfModifiedSince() {
+        when(request.getHeader("If-None-Match")).thenReturn("\"other\"");
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(LAST_MODIFIED);
+        assertFalse(validator.isNotModified(request));
+    }
+
+    @Test
+    public void ifModifiedSince() {
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(LAST_MODIFIED);
+        assertTrue(validator.isNotModified(request));
+    }
+
+    @Test
+    public void ifModifiedSinceWithinSameSecond() {
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(LAST_MODIFIED / 1000 * 1000);
+        assertTrue(new PageValidator(ETAG, LAST_MODIFIED + 999).isNotModified(request));
+    }
+
+    @Test
+    public void ifModifiedSinceBefore() {
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(LAST_MODIFIED - 1000);
+        assertFalse(validator.isNotModified(request));
+    }
+
+    @Test
+    public void ifModifiedSinceInvalid() {
+        when(request.getDateHeader("If-Modified-Since")).thenThrow(new IllegalArgumentException());
+        assertFalse(validator.isNotModified(request));
+    }
+
+    @Test
+    public void ifModifiedSinceWithoutLastModified() {
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(LAST_MODIFIED);
+        assertFalse(new PageValidator(ETAG, 0L).isNotModified(request));
+    }
+
+    @Test
+    public void writeHeaders() {
+        validator.writeHeaders(response);
+        verify(response).setHeader("ETag", ETAG);
+        verify(response).setDateHeader("Last-Modified", LAST_MODIFIED);
+    }
+
+    @Test
+    public void writeHeadersWithoutLastModified() {
+        new PageValidator(ETAG, 0L).writeHeaders(response);
+        verify(response).setHeader("ETag", ETAG);
+        verify(response, never()).setDateHeader(anyString(), anyLong());
+    }
+
+    @Test
+    public void computeUnremembered() {
+        assertNull(PageValidator.compute(UUID.randomUUID().toString(), null, 60000L, createState(1L), null));
+    }
+
+    @Test
+    public void computeUntracked() {
+        String key = UUID.randomUUID().toString();
+        PageDependencies dependencies = startDependencies();
+
+        dependencies.setUntracked();
+        PageValidator.remember(key, dependencies);
+
+        assertNull(PageValidator.compute(key, null, 60000L, createState(1L), null));
+    }
+
+    @Test
+    public void computePersonalized() {
+        String key = UUID.randomUUID().toString();
+        PageDependencies dependencies = startDependencies();
+
+        dependencies.setPersonalized();
+        PageValidator.remember(key, dependencies);
+
+        assertNull(PageValidator.compute(key, null, 60000L, createState(1L), null));
+    }
+
+    @Test
+    public void computeWithoutDuration() {
+        String key = UUID.randomUUID().toString();
+
+        PageValidator.remember(key, startDependencies());
+
+        assertNull(PageValidator.compute(key, null, 0L, createState(1L), null));
+    }
+
+    @Test
+    public void computeWithoutUpdateDate() {
+        String key = UUID.randomUUID().toString();
+
+        PageValidator.remember(key, startDependencies());
+
+        assertNull(PageValidator.compute(key, null, 60000L, createState(null), null));
+    }
+
+    @Test
+    public void computeChangesWithUpdateDate() {
+        String key = UUID.randomUUID().toString();
+        State mainObject = createState(LAST_MODIFIED);
+
+        PageValidator.remember(key, startDependencies());
+
+        PageValidator first = PageValidator.compute(key, null, Long.MAX_VALUE, mainObject, null);
+        PageValidator same = PageValidator.compute(key, null, Long.MAX_VALUE, mainObject, null);
+
+        assertNotNull(first);
+        assertEquals(first.getEtag(), same.getEtag());
+        assertEquals(LAST_MODIFIED, first.getLastModified());
+
+        Content.ObjectModification modification = mainObject.as(Content.ObjectModification.class);
+
+        when(modification.getUpdateDate()).thenReturn(new Date(LAST_MODIFIED + 1000));
+
+        PageValidator updated = PageValidator.compute(key, null, Long.MAX_VALUE, mainObject, null);
+
+        assertNotEquals(first.getEtag(), updated.getEtag());
+        assertEquals(LAST_MODIFIED + 1000, updated.getLastModified());
+    }
+
+    @Test
+    public void computeChangesWithVersion() {
+        String key = UUID.randomUUID().toString();
+        State mainObject = createState(LAST_MODIFIED);
+
+        PageValidator.remember(key, startDependencies());
+
+        assertNotEquals(
+                PageValidator.compute(key, "1", Long.MAX_VALUE, mainObject, null).getEtag(),
+                PageValidator.compute(key, "2", Long.MAX_VALUE, mainObject, null).getEtag());
+    }
+
+    @Test
+    public void computeBoundedByDuration() {
+        String key = UUID.randomUUID().toString();
+
+        PageValidator.remember(key, startDependencies());
+
+        // The time bucket starts after the update date, so it's used as
+        // the last modified time instead.
+        PageValidator validator = PageValidator.compute(key, null, 1000L, createState(LAST_MODIFIED), null);
+
+        assertTrue(validator.getLastModified() > LAST_MODIFIED);
+        assertTrue(validator.getLastModified() <= System.currentTimeMillis());
+    }
+
+    private static State createState(Long updateDate) {
+        State state = mock(State.class);
+        Content.ObjectModification modification = mock(Content.ObjectModification.class);
+
+        when(state.getId()).thenReturn(UUID.randomUUID());
+        when(state.as(Content.ObjectModification.class)).thenReturn(modification);
+        when(modification.getUpdateDate()).thenReturn(updateDate != null ? new Date(updateDate) : null);
+
+        return state;
+    }
+}
@@ -0,0 +1,134 @@
+package com.psddev.cms.db;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SiteUrlMatcherTest {
+
+    private static Site createSite(String... urls) {
+        Site site = mock(Site.class);
+
+        when(site.getUrls()).thenReturn(Arrays.asList(urls));
+        return site;
+    }
+
+    private static void assertMatch(SiteUrlMatcher matcher, String url, String expectedKey, Site expectedSite) {
+        Map.Entry<String, Site> match = matcher.match(url);
+
+        assertEquals(expectedKey, match.getKey());
+        assertSame(expectedSite, match.getValue());
+    }
+
+    @Test
+    public void longestPrefixWins() {
+        Site root = createSite("http://example.com");
+        Site section = createSite("http://example.com/section");
+        Site deep = createSite("http://example.com/section/deep/");
+        SiteUrlMatcher matcher = SiteUrlMatcher.compile(Arrays.asList(root, section, deep));
+
+        assertMatch(matcher, "http://example.com/", "http://example.com/", root);
+        assertMatch(matcher, "http://example.com/other", "http://example.com/", root);
+        assertMatch(matcher, "http://example.com/section/page", "http://example.com/section/", section);
+        assertMatch(matcher, "http://example.com/section/deep/page", "http://example.com/section/deep/", deep);
+    }
+
+    @Test
+    public void longestPrefixWinsRegardlessOfOrder() {
+        Site section = createSite("http://example.com/section/");
+        Site root = createSite("http://example.com/");
+        SiteUrlMatcher matcher = SiteUrlMatcher.compile(Arrays.asList(section, root));
+
+        assertMatch(matcher, "http://example.com/section/page", "http://example.com/section/", section);
+    }
+
+    @Test
+    public void prefixWithoutTrailingSlash() {
+        Site root = createSite("http://example.com/");
+        Site section = createSite("http://example.com/section/");
+        SiteUrlMatcher matcher = SiteUrlMatcher.compile(Arrays.asList(root, section));
+
+        assertMatch(matcher, "http://example.com/section", "http://example.com/section/", section);
+        assertMatch(matcher, "http://example.com/sections", "http://example.com/", root);
+        assertMatch(matcher, "http://example.com", "http://example.com/", root);
+    }
+
+    @Test
+    public void schemeMustMatch() {
+        Site secure = createSite("https://example.com/");
+        SiteUrlMatcher matcher = SiteUrlMatcher.compile(Arrays.asList(secure));
+
+        assertMatch(matcher, "https://example.com/page", "https://example.com/", secure);
+        assertNull(matcher.match("http://example.com/page"));
+    }
+
+    @Test
+    public void schemeRelative() {
+        Site site = createSite("//example.com/");
+        SiteUrlMatcher matcher = SiteUrlMatcher.compile(Arrays.asList(site));
+
+        assertMatch(matcher, "http://example.com/page", "http://example.com/", site);
+        assertMatch(matcher, "https://example.com/page", "https://example.com/", site);
+    }
+
+    @Test
+    public void hostRelative() {
+        Site root = createSite("http://example.com/");
+        Site relative = createSite("/relative");
+        SiteUrlMatcher matcher = SiteUrlMatcher.compile(Arrays.asList(root, relative));
+
+        assertMatch(matcher, "http://example.com/relative/page", "http://example.com/relative/", relative);
+        assertMatch(matcher, "http://example.com/page", "http://example.com/", root);
+        assertMatch(matcher, "http://other.com/relative/page", "http://other.com/relative/", relative);
+        assertNull(matcher.match("http://other.com/page"));
+    }
+
+    @Test
+    public void laterSiteWinsOnDuplicates() {
+        Site first = createSite("http://example.com/");
+        Site second = createSite("http://example.com/");
+        SiteUrlMatcher matcher = SiteUrlMatcher.compile(Arrays.asList(first, second));
+
+        assertMatch(matcher, "http://example.com/page", "http://example.com/", second);
+    }
+
+    @Test
+    public void unknownAuthority() {
+        SiteUrlMatcher matcher = SiteUrlMatcher.compile(Arrays.asList(createSite("http://example.com/")));
+
+        assertNull(matcher.match("http://example.org/"));
+        assertNull(matcher.match("http://example.com.evil/"));
+    }
+
+    @Test
+    public void malformedUrlsAreSkipped() {
+        Site site = createSite("http://exa mple.com/", "http://example.com/");
+        SiteUrlMatcher matcher = SiteUrlMatcher.compile(Arrays.asList(site));
+
+        assertMatch(matcher, "http://example.com/page", "http://example.com/", site);
+    }
+
+    @Test
+    public void supports() {
+        SiteUrlMatcher matcher = SiteUrlMatcher.compile(Arrays.asList(createSite("http://example.com/")));
+
+        assertTrue(matcher.supports("http://example.com/"));
+        assertTrue(matcher.supports("https://example.com/"));
+        assertFalse(matcher.supports("ftp://example.com/"));
+    }
+
+    @Test
+    public void requestRelativeUrlsAreUnsupported() {
+        SiteUrlMatcher matcher = SiteUrlMatcher.compile(Arrays.asList(createSite("relative/")));
+
+        assertFalse(matcher.supports("http://example.com/"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.psddev.cms.db;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StandardImageSizeTest {
+
+    private static StandardImageSize createSize(String internalName) {
+        StandardImageSize size = mock(StandardImageSize.class);
+
+        when(size.getInternalName()).thenReturn(internalName);
+        return size;
+    }
+
+    @Test
+    public void find() {
+        StandardImageSize foo = createSize("foo");
+        StandardImageSize bar = createSize("bar");
+        StandardImageSize.Sizes sizes = new StandardImageSize.Sizes(Arrays.asList(foo, bar));
+
+        assertSame(foo, sizes.find("foo"));
+        assertSame(bar, sizes.find("bar"));
+    }
+
+    @Test
+    public void findMissing() {
+        StandardImageSize.Sizes sizes = new StandardImageSize.Sizes(Collections.singletonList(createSize("foo")));
+
+        assertNull(sizes.find("bar"));
+        assertNull(sizes.find(null));
+    }
+
+    @Test
+    public void findFirstDuplicate() {
+        StandardImageSize first = createSize("foo");
+        StandardImageSize.Sizes sizes = new StandardImageSize.Sizes(Arrays.asList(first, createSize("foo")));
+
+        assertSame(first, sizes.find("foo"));
+    }
+
+    @Test
+    public void findWithoutInternalName() {
+        StandardImageSize unnamed = createSize(null);
+        List<StandardImageSize> all = Arrays.asList(unnamed, createSize("foo"));
+        StandardImageSize.Sizes sizes = new StandardImageSize.Sizes(all);
+
+        assertNull(sizes.find(null));
+        assertSame(all, sizes.all);
+    }
+
+    @Test
+    public void findEmpty() {
+        assertNull(new StandardImageSize.Sizes(Collections.emptyList()).find("foo"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.psddev.cms.rte;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+
+/**
+ * Compares the single-pass {@link RichTextViewBuilder} with the previous
+ * implementation, which serialized every unbound element with
+ * {@code outerHtml()} at each level of nesting, on long-form articles of
+ * increasing depth.
+ *
+ * <p>This isn't a unit test, so it isn't run by the build. Run its
+ * {@link #main} from the test classpath with the usual dari settings for a
+ * default database, since the builder looks up the rich text element
+ * types in the database environment, for example:</p>
+ *
+ * <blockquote><pre>
+ *     mvn -pl db test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.psddev.cms.rte.RichTextViewBuilderBenchmark
+ * </pre></blockquote>
+ */
+public class RichTextViewBuilderBenchmark {
+
+    private static final int PARAGRAPH_COUNT = 200;
+    private static final int[] DEPTHS = { 1, 10, 50, 200 };
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURED_ITERATIONS = 200;
+
+    public static void main(String[] arguments) {
+        for (int depth : DEPTHS) {
+            String html = createArticle(depth);
+
+            if (!String.join("", build(html)).equals(String.join("", buildPrevious(html)))) {
+                throw new IllegalStateException("Outputs differ at depth " + depth + "!");
+            }
+
+            System.out.printf("Depth %d, %,d characters%n", depth, html.length());
+            measure("RichTextViewBuilder", () -> build(html).size());
+            measure("Previous", () -> buildPrevious(html).size());
+        }
+    }
+
+    // Paragraphs with inline markup and lists, with a run of nested
+    // blockquotes in the middle.
+    private static String createArticle(int depth) {
+        StringBuilder html = new StringBuilder();
+
+        for (int i = 0; i < PARAGRAPH_COUNT; ++ i) {
+            html.append("<p>Paragraph ").append(i)
+                    .append(" with <b>bold</b>, <i>italic</i> and <a href=\"/link/").append(i).append("\">a link</a>.</p>");
+
+            if (i % 20 == 0) {
+                html.append("<ul><li>One</li><li>Two <em>nested</em></li><li>Three</li></ul>");
+            }
+
+            if (i == PARAGRAPH_COUNT / 2) {
+                for (int d = 0; d < depth; ++ d) {
+                    html.append("<blockquote><p>Level ").append(d).append("</p>");
+                }
+
+                for (int d = 0; d < depth; ++ d) {
+                    html.append("</blockquote>");
+                }
+            }
+        }
+
+        return html.toString();
+    }
+
+    private static void measure(String name, Supplier<Integer> operation) {
+        long sink = 0;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; ++ i) {
+            sink += operation.get();
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < MEASURED_ITERATIONS; ++ i) {
+            sink += operation.get();
+        }
+
+        double microsPerOperation = (System.nanoTime() - start) / 1000.0 / MEASURED_ITERATIONS;
+
+        System.out.printf("  %-20s %,12.1f us/op (%d)%n", name, microsPerOperation, sink);
+    }
+
+    private static List<String> build(String html) {
+        return new RichTextViewBuilder<String>(html)
+                .htmlToView(h -> h)
+                .cache(false)
+                .build();
+    }
+
+    // The previous implementation, for markup without any rich text
+    // elements.
+    private static List<String> buildPrevious(String html) {
+        Document document = Jsoup.parseBodyFragment(html);
+
+        document.outputSettings().prettyPrint(false);
+
+        return collapse(toStrings(document.body().childNodes()));
+    }
+
+    private static List<String> toStrings(List<Node> siblings) {
+        List<String> strings = new ArrayList<>();
+
+        for (Node sibling : siblings) {
+            if (sibling instanceof Element) {
+                Element element = (Element) sibling;
+                List<String> children = toStrings(element.childNodes());
+                String outerHtml = element.outerHtml();
+
+                if (element.tag().isSelfClosing()) {
+                    strings.add(outerHtml);
+
+                } else {
+                    strings.add(outerHtml.substring(0, outerHtml.indexOf('>') + 1));
+                    strings.addAll(children);
+                    strings.add(outerHtml.substring(outerHtml.lastIndexOf('<')));
+                }
+
+            } else if (sibling instanceof TextNode) {
+                strings.add(sibling.outerHtml());
+
+            } else if (sibling instanceof DataNode) {
+                strings.add(((DataNode) sibling).getWholeData());
+            }
+        }
+
+        return strings;
+    }
+
+    private static List<String> collapse(List<String> strings) {
+        List<String> collapsed = new ArrayList<>();
+
+        if (!strings.isEmpty()) {
+            collapsed.add(String.join("", strings));
+        }
+
+        return collapsed;
+    }
+}
@@ -0,0 +1,131 @@
+package com.psddev.cms.view;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import com.psddev.dari.util.IoUtils;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingViewTemplateLoaderTest {
+
+    private static final String PATH = "/foo.hbs";
+
+    @Mock
+    ViewTemplateLoader delegate;
+
+    private void stubTemplate(String content, long lastModified) throws IOException {
+        when(delegate.getLastModified(PATH)).thenReturn(lastModified);
+        when(delegate.getTemplate(PATH)).thenAnswer(invocation -> stream(content));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(ViewTemplateLoader loader) throws IOException {
+        try (InputStream input = loader.getTemplate(PATH)) {
+            return new String(IoUtils.toByteArray(input), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void withinInterval() throws IOException {
+        stubTemplate("foo", 1L);
+
+        CachingViewTemplateLoader loader = new CachingViewTemplateLoader(delegate, 60000L);
+
+        assertEquals("foo", read(loader));
+        assertEquals("foo", read(loader));
+        assertEquals(1L, loader.getLastModified(PATH));
+
+        verify(delegate, times(1)).getLastModified(PATH);
+        verify(delegate, times(1)).getTemplate(PATH);
+    }
+
+    @Test
+    public void revalidateUnchanged() throws IOException {
+        stubTemplate("foo", 1L);
+
+        CachingViewTemplateLoader loader = new CachingViewTemplateLoader(delegate, 0L);
+
+        assertEquals("foo", read(loader));
+        assertEquals("foo", read(loader));
+        assertEquals("foo", read(loader));
+
+        verify(delegate, times(3)).getLastModified(PATH);
+        verify(delegate, times(1)).getTemplate(PATH);
+    }
+
+    @Test
+    public void revalidateChanged() throws IOException {
+        stubTemplate("foo", 1L);
+
+        CachingViewTemplateLoader loader = new CachingViewTemplateLoader(delegate, 0L);
+
+        assertEquals("foo", read(loader));
+
+        stubTemplate("bar", 2L);
+
+        assertEquals("bar", read(loader));
+        assertEquals(2L, loader.getLastModified(PATH));
+        verify(delegate, times(2)).getTemplate(PATH);
+    }
+
+    @Test
+    public void neverRevalidate() throws IOException {
+        stubTemplate("foo", 1L);
+
+        CachingViewTemplateLoader loader = new CachingViewTemplateLoader(delegate, -1L);
+
+        assertEquals("foo", read(loader));
+
+        stubTemplate("bar", 2L);
+
+        assertEquals("foo", read(loader));
+        assertEquals(1L, loader.getLastModified(PATH));
+        verify(delegate, times(1)).getLastModified(PATH);
+        verify(delegate, times(1)).getTemplate(PATH);
+    }
+
+    @Test
+    public void clear() throws IOException {
+        stubTemplate("foo", 1L);
+
+        CachingViewTemplateLoader loader = new CachingViewTemplateLoader(delegate, -1L);
+
+        assertEquals("foo", read(loader));
+
+        loader.clear();
+
+        assertEquals("foo", read(loader));
+        verify(delegate, times(2)).getTemplate(PATH);
+    }
+
+    @Test
+    public void pathsCachedSeparately() throws IOException {
+        stubTemplate("foo", 1L);
+        when(delegate.getLastModified("/bar.hbs")).thenReturn(1L);
+        when(delegate.getTemplate("/bar.hbs")).thenAnswer(invocation -> stream("bar"));
+
+        CachingViewTemplateLoader loader = new CachingViewTemplateLoader(delegate, -1L);
+
+        assertEquals("foo", read(loader));
+
+        try (InputStream input = loader.getTemplate("/bar.hbs")) {
+            assertEquals("bar", new String(IoUtils.toByteArray(input), StandardCharsets.UTF_8));
+        }
+
+        verify(delegate, times(1)).getTemplate(PATH);
+        verify(delegate, times(1)).getTemplate("/bar.hbs");
+    }
+}
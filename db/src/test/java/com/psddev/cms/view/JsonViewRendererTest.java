@@ -0,0 +1,194 @@
+package com.psddev.cms.view;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import com.psddev.dari.util.ObjectUtils;
+import com.psddev.dari.util.Settings;
+import static org.junit.Assert.assertEquals;
+
+public class JsonViewRendererTest {
+
+    @ViewInterface
+    public interface TestView {
+
+        String getTitle();
+
+        Number getCount();
+
+        Boolean getFeatured();
+
+        String getMissing();
+
+        List<Object> getItems();
+
+        Map<String, Object> getAttributes();
+
+        TestChildView getChild();
+    }
+
+    @ViewInterface
+    public interface TestChildView {
+
+        String getName();
+
+        List<Object> getChildren();
+    }
+
+    public static class TestViewImpl implements TestView {
+
+        @Override
+        public String getTitle() {
+            return "Title with \"quotes\" and é";
+        }
+
+        @Override
+        public Number getCount() {
+            return 42;
+        }
+
+        @Override
+        public Boolean getFeatured() {
+            return Boolean.TRUE;
+        }
+
+        @Override
+        public String getMissing() {
+            return null;
+        }
+
+        @Override
+        public List<Object> getItems() {
+            return Arrays.asList("a", null, 1.5, Collections.emptyList(), new TestChildViewImpl("item"));
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            Map<String, Object> nested = new LinkedHashMap<>();
+            nested.put("deep", Arrays.asList(1, 2, 3));
+            nested.put("empty", null);
+
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            attributes.put("nested", nested);
+            attributes.put("child", new TestChildViewImpl("attribute"));
+            return attributes;
+        }
+
+        @Override
+        public TestChildView getChild() {
+            return new TestChildViewImpl("child");
+        }
+    }
+
+    public static class TestChildViewImpl implements TestChildView {
+
+        private final String name;
+
+        public TestChildViewImpl(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<Object> getChildren() {
+            List<Object> children = new ArrayList<>();
+            children.add(null);
+            children.add(Collections.singletonMap("key", "value"));
+            return children;
+        }
+    }
+
+    public static class FailingViewImpl extends TestViewImpl {
+
+        @Override
+        public TestChildView getChild() {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static JsonViewRenderer createRenderer(boolean indented, boolean includeClassNames) {
+        JsonViewRenderer renderer = new JsonViewRenderer();
+        renderer.setIndented(indented);
+        renderer.setIncludeClassNames(includeClassNames);
+        return renderer;
+    }
+
+    private static String render(Object view, boolean indented, boolean includeClassNames) throws IOException {
+        StringWriter writer = new StringWriter();
+        createRenderer(indented, includeClassNames).render(view, null).writeTo(writer);
+        return writer.toString();
+    }
+
+    private static void assertSameAsToJson(boolean indented, boolean includeClassNames) throws IOException {
+        String expected = ObjectUtils.toJson(new ViewMap(new TestViewImpl(), includeClassNames), indented);
+
+        assertEquals(expected, render(new TestViewImpl(), indented, includeClassNames));
+        assertEquals(expected, createRenderer(indented, includeClassNames).render(new TestViewImpl(), null).get());
+    }
+
+    @Test
+    public void compact() throws IOException {
+        assertSameAsToJson(false, false);
+    }
+
+    @Test
+    public void indented() throws IOException {
+        assertSameAsToJson(true, false);
+    }
+
+    @Test
+    public void includeClassNames() throws IOException {
+        assertSameAsToJson(false, true);
+    }
+
+    @Test
+    public void indentedWithClassNames() throws IOException {
+        assertSameAsToJson(true, true);
+    }
+
+    @Test
+    public void repeatedRenders() throws IOException {
+        String expected = ObjectUtils.toJson(new ViewMap(new TestViewImpl()), false);
+
+        for (int i = 0; i < 3; ++ i) {
+            assertEquals(expected, render(new TestViewImpl(), false, false));
+        }
+    }
+
+    @Test
+    public void plainMap() throws IOException {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("string", "value");
+        map.put("list", Arrays.asList(1, null, "two"));
+
+        assertEquals(ObjectUtils.toJson(map, true), render(map, true, false));
+    }
+
+    @Test
+    public void failureDoesNotAffectNextRender() throws IOException {
+        Settings.setOverride(Settings.PRODUCTION_SETTING, false);
+
+        try {
+            new JsonViewRenderer().render(new FailingViewImpl(), null).get();
+
+        } catch (RuntimeException error) {
+            assertEquals(
+                    ObjectUtils.toJson(new ViewMap(new TestChildViewImpl("after")), false),
+                    render(new TestChildViewImpl("after"), false, false));
+            return;
+        }
+
+        throw new AssertionError("Expected the failing getter to throw!");
+    }
+}
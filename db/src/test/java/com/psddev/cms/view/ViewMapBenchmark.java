@@ -0,0 +1,263 @@
+package com.psddev.cms.view;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Compares {@link ViewMap}, which uses accessor tables shared by all the
+ * instances of a view class, with the previous implementation, which
+ * introspected the view and collected reflective suppliers for every
+ * instance.
+ *
+ * <p>This isn't a unit test, so it isn't run by the build. Run its
+ * {@link #main} from the test classpath, for example:</p>
+ *
+ * <blockquote><pre>
+ *     mvn -pl db test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.psddev.cms.view.ViewMapBenchmark
+ * </pre></blockquote>
+ */
+public class ViewMapBenchmark {
+
+    private static final int CHILD_COUNT = 50;
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int MEASURED_ITERATIONS = 20000;
+    private static final int ROUNDS = 5;
+
+    @ViewInterface
+    public interface PageView {
+
+        String getTitle();
+
+        String getDescription();
+
+        String getUrl();
+
+        Number getPosition();
+
+        Boolean getFeatured();
+
+        List<Object> getItems();
+    }
+
+    @ViewInterface
+    public interface ItemView {
+
+        String getHeadline();
+
+        String getUrl();
+
+        String getImageUrl();
+
+        Number getWidth();
+
+        Number getHeight();
+    }
+
+    public static class PageViewImpl implements PageView {
+
+        private final List<Object> items = new ArrayList<>();
+
+        public PageViewImpl() {
+            for (int i = 0; i < CHILD_COUNT; ++ i) {
+                items.add(new ItemViewImpl(i));
+            }
+        }
+
+        @Override
+        public String getTitle() {
+            return "Title";
+        }
+
+        @Override
+        public String getDescription() {
+            return "Description";
+        }
+
+        @Override
+        public String getUrl() {
+            return "/page";
+        }
+
+        @Override
+        public Number getPosition() {
+            return 1;
+        }
+
+        @Override
+        public Boolean getFeatured() {
+            return Boolean.TRUE;
+        }
+
+        @Override
+        public List<Object> getItems() {
+            return items;
+        }
+    }
+
+    public static class ItemViewImpl implements ItemView {
+
+        private final int index;
+
+        public ItemViewImpl(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getHeadline() {
+            return "Headline";
+        }
+
+        @Override
+        public String getUrl() {
+            return "/item";
+        }
+
+        @Override
+        public String getImageUrl() {
+            return "/image.jpg";
+        }
+
+        @Override
+        public Number getWidth() {
+            return index;
+        }
+
+        @Override
+        public Number getHeight() {
+            return index;
+        }
+    }
+
+    public static void main(String[] arguments) {
+        PageView view = new PageViewImpl();
+
+        for (int round = 1; round <= ROUNDS; ++ round) {
+            System.out.printf("Round %d%n", round);
+            measure("ViewMap", () -> count(new ViewMap(view)));
+            measure("Reflective (previous)", () -> count(reflect(view)));
+        }
+    }
+
+    private static void measure(String name, Supplier<Integer> operation) {
+        long sink = 0;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; ++ i) {
+            sink += operation.get();
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < MEASURED_ITERATIONS; ++ i) {
+            sink += operation.get();
+        }
+
+        double nanosPerOperation = (System.nanoTime() - start) / (double) MEASURED_ITERATIONS;
+
+        System.out.printf("  %-24s %,12.0f ns/op (%d)%n", name, nanosPerOperation, sink);
+    }
+
+    // Resolves every entry in the tree, like a template would.
+    private static int count(Object value) {
+        if (value instanceof Map) {
+            int count = 0;
+
+            for (Object item : ((Map<?, ?>) value).values()) {
+                count += 1 + count(item);
+            }
+
+            return count;
+
+        } else if (value instanceof Collection) {
+            int count = 0;
+
+            for (Object item : (Collection<?>) value) {
+                count += count(item);
+            }
+
+            return count;
+
+        } else {
+            return 0;
+        }
+    }
+
+    // The previous implementation: introspects every view instance and
+    // calls the getters reflectively.
+    private static Map<String, Object> reflect(Object view) {
+        Map<String, Supplier<Object>> suppliers = new LinkedHashMap<>();
+
+        for (Class<?> viewClass : ViewUtils.getAnnotatableClasses(view.getClass())) {
+            if (!viewClass.isAnnotationPresent(ViewInterface.class)) {
+                continue;
+            }
+
+            PropertyDescriptor[] descriptors;
+
+            try {
+                descriptors = Introspector.getBeanInfo(viewClass).getPropertyDescriptors();
+
+            } catch (IntrospectionException error) {
+                throw new IllegalStateException(error);
+            }
+
+            for (PropertyDescriptor descriptor : descriptors) {
+                Method getter = descriptor.getReadMethod();
+
+                if (getter != null && !"class".equals(descriptor.getName())) {
+                    suppliers.putIfAbsent(descriptor.getName(), () -> invoke(getter, view));
+                }
+            }
+        }
+
+        Map<String, Object> resolved = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Supplier<Object>> entry : suppliers.entrySet()) {
+            Object value = reflectValue(entry.getValue().get());
+
+            if (value != null) {
+                resolved.put(entry.getKey(), value);
+            }
+        }
+
+        return resolved;
+    }
+
+    private static Object reflectValue(Object value) {
+        if (value instanceof Collection) {
+            List<Object> list = new ArrayList<>();
+
+            for (Object item : (Collection<?>) value) {
+                list.add(reflectValue(item));
+            }
+
+            return list;
+
+        } else if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value;
+
+        } else if (value != null) {
+            return reflect(value);
+
+        } else {
+            return null;
+        }
+    }
+
+    private static Object invoke(Method getter, Object view) {
+        try {
+            getter.setAccessible(true);
+            return getter.invoke(view);
+
+        } catch (ReflectiveOperationException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.psddev.cms.view;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+import com.psddev.dari.db.Database;
+import com.psddev.dari.db.State;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ViewRecordLoaderTest {
+
+    private Map<UUID, State> database;
+    private List<List<UUID>> finds;
+    private List<List<UUID>> invisibleFinds;
+    private ViewRecordLoader loader;
+
+    @Before
+    public void before() {
+        database = new HashMap<>();
+        finds = new ArrayList<>();
+        invisibleFinds = new ArrayList<>();
+        loader = new ViewRecordLoader() {
+
+            @Override
+            protected List<?> find(Database database, boolean resolveInvisible, List<UUID> ids) {
+                (resolveInvisible ? invisibleFinds : finds).add(ids);
+
+                List<State> records = new ArrayList<>();
+
+                for (UUID id : ids) {
+                    State record = database.get(id);
+
+                    if (record != null) {
+                        records.add(record);
+                    }
+                }
+
+                return records;
+            }
+        };
+    }
+
+    private State createRecord() {
+        UUID id = UUID.randomUUID();
+        State record = mock(State.class);
+
+        when(record.getId()).thenReturn(id);
+        database.put(id, record);
+        return record;
+    }
+
+    private static State createModel(String name, Object value) {
+        return createModel(name, value, false);
+    }
+
+    private static State createModel(String name, Object value, boolean resolveInvisible) {
+        State model = mock(State.class);
+        Map<String, Object> rawValues = new HashMap<>();
+
+        rawValues.put(name, value);
+        when(model.getRawValues()).thenReturn(rawValues);
+        when(model.isResolveInvisible()).thenReturn(resolveInvisible);
+        return model;
+    }
+
+    private static Map<String, Object> createReference(State record) {
+        return Collections.singletonMap("_ref", record.getId().toString());
+    }
+
+    @Test
+    public void loadBatched() {
+        State a = createRecord();
+        State b = createRecord();
+        State c = createRecord();
+
+        Supplier<State> aSupplier = loader.load(a.getId(), State.class);
+        Supplier<State> bSupplier = loader.load(b.getId(), State.class);
+        Supplier<State> cSupplier = loader.load(c.getId(), State.class);
+
+        assertTrue(finds.isEmpty());
+        assertSame(a, aSupplier.get());
+        assertSame(b, bSupplier.get());
+        assertSame(c, cSupplier.get());
+        assertEquals(Collections.singletonList(Arrays.asList(a.getId(), b.getId(), c.getId())), finds);
+    }
+
+    @Test
+    public void loadAfterFlush() {
+        State a = createRecord();
+        State b = createRecord();
+
+        assertSame(a, loader.load(a.getId(), State.class).get());
+
+        Supplier<State> aSupplier = loader.load(a.getId(), State.class);
+        Supplier<State> bSupplier = loader.load(b.getId(), State.class);
+
+        assertSame(b, bSupplier.get());
+        assertSame(a, aSupplier.get());
+        assertEquals(Arrays.asList(Collections.singletonList(a.getId()), Collections.singletonList(b.getId())), finds);
+    }
+
+    @Test
+    public void loadMissingCached() {
+        UUID id = UUID.randomUUID();
+
+        assertNull(loader.load(id, State.class).get());
+        assertNull(loader.load(id, State.class).get());
+        assertEquals(1, finds.size());
+    }
+
+    @Test
+    public void loadNullId() {
+        assertNull(loader.load(null, State.class).get());
+        assertTrue(finds.isEmpty());
+    }
+
+    @Test
+    public void loadWrongType() {
+        State a = createRecord();
+
+        assertNull(loader.load(a.getId(), String.class).get());
+    }
+
+    @Test
+    public void loadAll() {
+        State a = createRecord();
+        State b = createRecord();
+        UUID missing = UUID.randomUUID();
+
+        Supplier<List<State>> supplier = loader.loadAll(Arrays.asList(b.getId(), missing, a.getId()), State.class);
+
+        assertEquals(Arrays.asList(b, a), supplier.get());
+        assertEquals(1, finds.size());
+    }
+
+    @Test
+    public void loadAllEmpty() {
+        assertTrue(loader.loadAll(null, State.class).get().isEmpty());
+        assertTrue(loader.loadAll(Collections.emptyList(), State.class).get().isEmpty());
+        assertTrue(finds.isEmpty());
+    }
+
+    @Test
+    public void loadReference() {
+        State a = createRecord();
+        State b = createRecord();
+
+        Supplier<State> aSupplier = loader.loadReference(createModel("a", createReference(a)), "a", State.class);
+        Supplier<State> bSupplier = loader.loadReference(createModel("b", createReference(b)), "b", State.class);
+
+        assertSame(a, aSupplier.get());
+        assertSame(b, bSupplier.get());
+        assertEquals(Collections.singletonList(Arrays.asList(a.getId(), b.getId())), finds);
+    }
+
+    @Test
+    public void loadReferenceResolved() {
+        State a = createRecord();
+
+        assertSame(a, loader.loadReference(createModel("a", a), "a", State.class).get());
+        assertNull(loader.loadReference(null, "a", State.class).get());
+        assertTrue(finds.isEmpty());
+    }
+
+    @Test
+    public void loadReferences() {
+        State a = createRecord();
+        State b = createRecord();
+        State c = createRecord();
+        State model = createModel("items", Arrays.asList(createReference(a), b, createReference(c)));
+
+        assertEquals(Arrays.asList(a, b, c), loader.loadReferences(model, "items", State.class).get());
+        assertEquals(Collections.singletonList(Arrays.asList(a.getId(), c.getId())), finds);
+    }
+
+    @Test
+    public void loadReferenceResolveInvisible() {
+        State a = createRecord();
+        State b = createRecord();
+
+        Supplier<State> aSupplier = loader.loadReference(createModel("a", createReference(a), true), "a", State.class);
+        Supplier<State> bSupplier = loader.load(b.getId(), State.class);
+
+        assertSame(a, aSupplier.get());
+        assertSame(b, bSupplier.get());
+        assertEquals(Collections.singletonList(Collections.singletonList(a.getId())), invisibleFinds);
+        assertEquals(Collections.singletonList(Collections.singletonList(b.getId())), finds);
+    }
+}